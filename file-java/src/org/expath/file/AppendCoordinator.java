@@ -0,0 +1,247 @@
+/****************************************************************************/
+/*  File:       AppendCoordinator.java                                      */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merge concurrent appends to the same file into batches ("group commit").
+ *
+ * Appends are queued by canonical path.  The first thread to queue a record
+ * for a file becomes the leader: it takes all the records queued so far, opens
+ * the file once, and writes them with one gathering write, then forces them
+ * to disk once if any of them asks for it.  The other threads wait for their
+ * record to be written.  If more records have been queued meanwhile, the
+ * leader hands over to the thread of the first of them.
+ *
+ * Each record reaches the file whole, never interleaved with another one, and
+ * records are written in the order they were queued.  As {@link #append}
+ * returns only once the record has been written, the records of one thread
+ * are in the order of its calls.
+ *
+ * Set it on a {@link Write} object to use it for its appends.  An instance
+ * can be shared by several of them, and between threads.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class AppendCoordinator
+{
+    /**
+     * Append a record to a file, and return once it has been written.
+     *
+     * Return the time spent forcing the batch to disk, if this thread wrote
+     * the batch, in nanoseconds, or 0 otherwise.
+     */
+    public long append(String file, ByteBuffer record, Durability durability)
+            throws FileException
+    {
+        String key = key(file);
+        Record rec = new Record(file, record, durability);
+        Group group;
+        synchronized ( myGroups ) {
+            group = myGroups.get(key);
+            if ( group == null ) {
+                group = new Group();
+                myGroups.put(key, group);
+            }
+            synchronized ( group ) {
+                group.pending.add(rec);
+                if ( ! group.active ) {
+                    group.active = true;
+                    rec.leader = true;
+                }
+            }
+        }
+        boolean interrupted = false;
+        synchronized ( group ) {
+            while ( ! rec.done && ! rec.leader ) {
+                try {
+                    group.wait();
+                }
+                catch ( InterruptedException ex ) {
+                    // the record is queued, it will be written anyway
+                    interrupted = true;
+                }
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+        long nanos = 0;
+        if ( ! rec.done ) {
+            nanos = lead(key, group);
+        }
+        if ( rec.error != null ) {
+            throw rec.error;
+        }
+        if ( rec.failure != null ) {
+            throw FileException.ioError("Error appending to the file: " + file, rec.failure);
+        }
+        return nanos;
+    }
+
+    /**
+     * Write one batch, then hand over to the next thread, if any.
+     */
+    private long lead(String key, Group group)
+    {
+        List<Record> batch;
+        synchronized ( group ) {
+            batch = new ArrayList<>(group.pending);
+            group.pending.clear();
+        }
+        long nanos = 0;
+        FileException error = null;
+        Throwable failure = null;
+        try {
+            nanos = writeBatch(batch);
+        }
+        catch ( FileException ex ) {
+            error = ex;
+        }
+        catch ( RuntimeException | Error ex ) {
+            // the leader gets the original, the other threads an error for their record
+            failure = ex;
+            throw ex;
+        }
+        finally {
+            // always hand over, or the other threads would wait forever
+            synchronized ( myGroups ) {
+                synchronized ( group ) {
+                    for ( Record r : batch ) {
+                        r.error = error;
+                        r.failure = failure;
+                        r.done = true;
+                    }
+                    if ( group.pending.isEmpty() ) {
+                        group.active = false;
+                        myGroups.remove(key);
+                    }
+                    else {
+                        group.pending.get(0).leader = true;
+                    }
+                    group.notifyAll();
+                }
+            }
+        }
+        return nanos;
+    }
+
+    private static long writeBatch(List<Record> batch)
+            throws FileException
+    {
+        String file = batch.get(0).file;
+        ByteBuffer[] bufs = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        Durability durability = Durability.NONE;
+        for ( int i = 0; i < bufs.length; ++i ) {
+            Record r = batch.get(i);
+            bufs[i] = r.bytes;
+            remaining += r.bytes.remaining();
+            if ( r.durability.compareTo(durability) > 0 ) {
+                durability = r.durability;
+            }
+        }
+        FileChannel ch = Util.openWriteChannel(file, true);
+        try {
+            // the last records may be empty, so count the bytes
+            while ( remaining > 0 ) {
+                remaining -= ch.write(bufs);
+            }
+            long nanos = 0;
+            if ( durability != Durability.NONE ) {
+                long start = System.nanoTime();
+                ch.force(durability == Durability.FULL);
+                nanos = System.nanoTime() - start;
+            }
+            return nanos;
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error appending to the file: " + file, ex);
+        }
+        finally {
+            Util.close(ch);
+        }
+    }
+
+    private static String key(String file)
+            throws FileException
+    {
+        try {
+            return new File(file).getCanonicalPath();
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error resolving the path of the file: " + file, ex);
+        }
+    }
+
+    /**
+     * The records queued for one file.  All fields are guarded by the group.
+     */
+    private static class Group
+    {
+        public final List<Record> pending = new ArrayList<>();
+        /** Whether a thread is writing a batch for this file. */
+        public boolean active = false;
+    }
+
+    private static class Record
+    {
+        public Record(String file, ByteBuffer bytes, Durability durability)
+        {
+            this.file = file;
+            this.bytes = bytes;
+            this.durability = durability;
+        }
+
+        public final String file;
+        public final ByteBuffer bytes;
+        public final Durability durability;
+        /** Guarded by the group. */
+        public boolean leader = false;
+        public boolean done = false;
+        public FileException error = null;
+        /** Any other error raised while writing the batch, wrapped by the thread of the record. */
+        public Throwable failure = null;
+    }
+
+    /** The files with records queued or being written, by canonical path. */
+    private final Map<String, Group> myGroups = new HashMap<>();
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,300 @@
+/****************************************************************************/
+/*  File:       AsyncRead.java                                              */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous counterparts of the `read*` functions in {@link Read}.
+ *
+ * Files are read through an {@link AsynchronousFileChannel}, so the calling
+ * thread does not wait for the read to complete.  The I/O itself may still
+ * block a thread of the executor (on Linux, the JDK runs file channels as
+ * blocking I/O on its threads).  Each method comes in two flavours: one
+ * returning a {@link Future}, and one calling a {@link CompletionHandler} with
+ * an attachment, like the channel itself.  Errors are always reported as a
+ * {@link FileException}, of the same type as by {@link Read}, either as the
+ * cause of the {@code ExecutionException} thrown by the future, or passed to
+ * the handler.  Errors detected when opening the file are reported before the
+ * method returns, in the calling thread.
+ *
+ * The handlers are run by the executor given to the constructor, or by the
+ * default thread pool of the JVM.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class AsyncRead
+{
+    public AsyncRead()
+    {
+        this(null);
+    }
+
+    public AsyncRead(ExecutorService executor)
+    {
+        myExecutor = executor;
+    }
+
+    /**
+     * The executor running the completion handlers, null for the default one.
+     */
+    public ExecutorService getExecutor()
+    {
+        return myExecutor;
+    }
+
+    public Future<byte[]> readBinary(String file)
+    {
+        AsyncResult<byte[]> result = new AsyncResult<>();
+        readBinary(file, null, result);
+        return result;
+    }
+
+    public <A> void readBinary(String file, A attachment, CompletionHandler<byte[], ? super A> handler)
+    {
+        AsynchronousFileChannel ch;
+        long size;
+        try {
+            ch = Util.openAsyncReadChannel(file, myExecutor);
+            size = size(file, ch);
+        }
+        catch ( FileException ex ) {
+            handler.failed(ex, attachment);
+            return;
+        }
+        read(file, ch, 0, size, attachment, handler);
+    }
+
+    public Future<byte[]> readBinary(String file, long offset, long length)
+    {
+        AsyncResult<byte[]> result = new AsyncResult<>();
+        readBinary(file, offset, length, null, result);
+        return result;
+    }
+
+    public <A> void readBinary(String file, long offset, long length, A attachment,
+                               CompletionHandler<byte[], ? super A> handler)
+    {
+        if ( offset < 0 ) {
+            handler.failed(FileException.outOfRange("Offset is negative: " + offset), attachment);
+            return;
+        }
+        if ( length < 0 ) {
+            handler.failed(FileException.outOfRange("Length is negative: " + length), attachment);
+            return;
+        }
+        AsynchronousFileChannel ch;
+        try {
+            ch = Util.openAsyncReadChannel(file, myExecutor);
+            long size = size(file, ch);
+            if ( offset + length > size ) {
+                close(file, ch);
+                throw FileException.outOfRange("Range (" + offset + "+" + length
+                        + ") exceeds the file size (" + size + "): " + file);
+            }
+        }
+        catch ( FileException ex ) {
+            handler.failed(ex, attachment);
+            return;
+        }
+        read(file, ch, offset, length, attachment, handler);
+    }
+
+    public Future<String> readText(String file)
+    {
+        return readText(file, StandardCharsets.UTF_8.name());
+    }
+
+    public Future<String> readText(String file, String encoding)
+    {
+        AsyncResult<String> result = new AsyncResult<>();
+        readText(file, encoding, null, result);
+        return result;
+    }
+
+    /**
+     * Read the text of a file.  It is decoded by the thread running the handler.
+     */
+    public <A> void readText(final String file, String encoding, A attachment,
+                             final CompletionHandler<String, ? super A> handler)
+    {
+        final Charset cs;
+        try {
+            cs = Util.getCharset(encoding);
+        }
+        catch ( FileException ex ) {
+            handler.failed(ex, attachment);
+            return;
+        }
+        readBinary(file, attachment, new CompletionHandler<byte[], A>() {
+            @Override
+            public void completed(byte[] bytes, A attachment) {
+                String text;
+                try {
+                    text = Util.getDecoder(cs).decode(ByteBuffer.wrap(bytes)).toString();
+                }
+                catch ( CharacterCodingException ex ) {
+                    handler.failed(FileException.ioError("Encoding error (" + cs + ") reading: " + file, ex), attachment);
+                    return;
+                }
+                handler.completed(text, attachment);
+            }
+            @Override
+            public void failed(Throwable ex, A attachment) {
+                handler.failed(ex, attachment);
+            }
+        });
+    }
+
+    private <A> void read(String file, AsynchronousFileChannel ch, long offset, long length, A attachment,
+                          CompletionHandler<byte[], ? super A> handler)
+    {
+        if ( length > MAX_ARRAY_SIZE ) {
+            try {
+                close(file, ch);
+            }
+            catch ( FileException ex ) {
+                // the error about the size is more relevant
+            }
+            handler.failed(FileException.ioError("Content too large to fit in an array (" + length + "): " + file), attachment);
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) length);
+        new Reading<>(file, ch, buf, offset, attachment, handler).next();
+    }
+
+    private static long size(String file, AsynchronousFileChannel ch)
+            throws FileException
+    {
+        try {
+            return ch.size();
+        }
+        catch ( IOException ex ) {
+            close(file, ch);
+            throw FileException.ioError("Error getting the size of the file: " + file, ex);
+        }
+    }
+
+    private static void close(String file, AsynchronousFileChannel ch)
+            throws FileException
+    {
+        try {
+            ch.close();
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error closing the file: " + file, ex);
+        }
+    }
+
+    /**
+     * Fill a buffer from a position in a channel, one asynchronous read at a time.
+     */
+    private static class Reading<A>
+            implements CompletionHandler<Integer, Void>
+    {
+        public Reading(String file, AsynchronousFileChannel ch, ByteBuffer buf, long offset,
+                       A attachment, CompletionHandler<byte[], ? super A> handler)
+        {
+            myFile = file;
+            myChannel = ch;
+            myBuffer = buf;
+            myOffset = offset;
+            myAttachment = attachment;
+            myHandler = handler;
+        }
+
+        public void next()
+        {
+            if ( myBuffer.hasRemaining() ) {
+                myChannel.read(myBuffer, myOffset + myBuffer.position(), null, this);
+                return;
+            }
+            try {
+                close(myFile, myChannel);
+            }
+            catch ( FileException ex ) {
+                myHandler.failed(ex, myAttachment);
+                return;
+            }
+            myHandler.completed(myBuffer.array(), myAttachment);
+        }
+
+        @Override
+        public void completed(Integer read, Void nothing)
+        {
+            if ( read < 0 ) {
+                fail(FileException.outOfRange("Not enough bytes in file, read: " + myBuffer.position()));
+            }
+            else {
+                next();
+            }
+        }
+
+        @Override
+        public void failed(Throwable ex, Void nothing)
+        {
+            fail(FileException.ioError("Error reading from the file: " + myFile, ex));
+        }
+
+        private void fail(FileException ex)
+        {
+            try {
+                close(myFile, myChannel);
+            }
+            catch ( FileException ignored ) {
+                // report the original error
+            }
+            myHandler.failed(ex, myAttachment);
+        }
+
+        private final String myFile;
+        private final AsynchronousFileChannel myChannel;
+        private final ByteBuffer myBuffer;
+        private final long myOffset;
+        private final A myAttachment;
+        private final CompletionHandler<byte[], ? super A> myHandler;
+    }
+
+    /** Some VMs reserve header words in an array, stay on the safe side. */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final ExecutorService myExecutor;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
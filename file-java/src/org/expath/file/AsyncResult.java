@@ -0,0 +1,122 @@
+/****************************************************************************/
+/*  File:       AsyncResult.java                                            */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The result of an asynchronous operation, completed by a completion handler.
+ *
+ * This is the {@link Future} returned by the methods of {@link AsyncRead} and
+ * {@link AsyncWrite} not taking a handler.  If the operation failed, the cause
+ * of the {@link ExecutionException} is a {@link FileException}.  Operations
+ * cannot be cancelled.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+class AsyncResult<V>
+        implements Future<V>
+                 , CompletionHandler<V, Object>
+{
+    @Override
+    public void completed(V result, Object attachment)
+    {
+        myResult = result;
+        myDone.countDown();
+    }
+
+    @Override
+    public void failed(Throwable ex, Object attachment)
+    {
+        myError = ex;
+        myDone.countDown();
+    }
+
+    @Override
+    public boolean cancel(boolean interrupt)
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return myDone.getCount() == 0;
+    }
+
+    @Override
+    public V get()
+            throws InterruptedException
+                 , ExecutionException
+    {
+        myDone.await();
+        return result();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit)
+            throws InterruptedException
+                 , ExecutionException
+                 , TimeoutException
+    {
+        if ( ! myDone.await(timeout, unit) ) {
+            throw new TimeoutException("Operation not completed after " + timeout + " " + unit);
+        }
+        return result();
+    }
+
+    private V result()
+            throws ExecutionException
+    {
+        if ( myError != null ) {
+            throw new ExecutionException(myError.getMessage(), myError);
+        }
+        return myResult;
+    }
+
+    private final CountDownLatch myDone = new CountDownLatch(1);
+    /** Written before the latch is released, so visible after it is. */
+    private V myResult = null;
+    private Throwable myError = null;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,330 @@
+/****************************************************************************/
+/*  File:       AsyncWrite.java                                             */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous counterparts of some `write*` and `append*` functions in {@link Write}.
+ *
+ * Files are written through an {@link AsynchronousFileChannel}, so the calling
+ * thread does not wait for the write to complete.  The I/O itself may still
+ * block a thread of the executor (on Linux, the JDK runs file channels as
+ * blocking I/O on its threads).  The methods come in the same two flavours as
+ * in {@link AsyncRead}, and report errors the same way.
+ *
+ * An asynchronous channel cannot be opened in append mode, so each append
+ * reserves the range it writes to, starting at the end of the file, or at the
+ * end of the appends to the same file still in flight.  Concurrent appends
+ * made through this class never overwrite each other, but they are not atomic
+ * with respect to writes made by other means.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class AsyncWrite
+{
+    public AsyncWrite()
+    {
+        this(null);
+    }
+
+    public AsyncWrite(ExecutorService executor)
+    {
+        myExecutor = executor;
+    }
+
+    /**
+     * The executor running the completion handlers, null for the default one.
+     */
+    public ExecutorService getExecutor()
+    {
+        return myExecutor;
+    }
+
+    public Future<Void> writeBinary(String file, byte[] value)
+    {
+        AsyncResult<Void> result = new AsyncResult<>();
+        writeBinary(file, value, null, result);
+        return result;
+    }
+
+    public <A> void writeBinary(String file, byte[] value, A attachment, CompletionHandler<Void, ? super A> handler)
+    {
+        write(file, ByteBuffer.wrap(value), false, attachment, handler);
+    }
+
+    public Future<Void> appendBinary(String file, byte[] value)
+    {
+        AsyncResult<Void> result = new AsyncResult<>();
+        appendBinary(file, value, null, result);
+        return result;
+    }
+
+    public <A> void appendBinary(String file, byte[] value, A attachment, CompletionHandler<Void, ? super A> handler)
+    {
+        write(file, ByteBuffer.wrap(value), true, attachment, handler);
+    }
+
+    public Future<Void> writeText(String file, String value, String encoding)
+    {
+        AsyncResult<Void> result = new AsyncResult<>();
+        writeText(file, value, encoding, null, result);
+        return result;
+    }
+
+    public <A> void writeText(String file, String value, String encoding, A attachment,
+                              CompletionHandler<Void, ? super A> handler)
+    {
+        writeText(file, value, encoding, false, attachment, handler);
+    }
+
+    public Future<Void> appendText(String file, String value, String encoding)
+    {
+        AsyncResult<Void> result = new AsyncResult<>();
+        appendText(file, value, encoding, null, result);
+        return result;
+    }
+
+    public <A> void appendText(String file, String value, String encoding, A attachment,
+                               CompletionHandler<Void, ? super A> handler)
+    {
+        writeText(file, value, encoding, true, attachment, handler);
+    }
+
+    private <A> void writeText(String file, String value, String encoding, boolean append, A attachment,
+                               CompletionHandler<Void, ? super A> handler)
+    {
+        ByteBuffer bytes;
+        try {
+            Charset cs = Util.getCharset(encoding);
+            bytes = Util.encode(value, cs);
+        }
+        catch ( FileException ex ) {
+            handler.failed(ex, attachment);
+            return;
+        }
+        write(file, bytes, append, attachment, handler);
+    }
+
+    private <A> void write(String file, ByteBuffer bytes, boolean append, A attachment,
+                           CompletionHandler<Void, ? super A> handler)
+    {
+        AsynchronousFileChannel ch;
+        String key = null;
+        long position = 0;
+        try {
+            ch = Util.openAsyncWriteChannel(file, myExecutor, append);
+            if ( append ) {
+                try {
+                    key = key(file);
+                    position = reserve(key, ch, bytes.remaining());
+                }
+                catch ( FileException ex ) {
+                    close(file, ch);
+                    throw ex;
+                }
+            }
+        }
+        catch ( FileException ex ) {
+            handler.failed(ex, attachment);
+            return;
+        }
+        new Writing<>(file, key, ch, bytes, position, attachment, handler).next();
+    }
+
+    /**
+     * Reserve {@code length} bytes at the end of a file, and return their position.
+     *
+     * The end of the file is read from the channel only if no other append to
+     * the same file is in flight, otherwise the range follows theirs.
+     */
+    private static long reserve(String key, AsynchronousFileChannel ch, int length)
+            throws FileException
+    {
+        synchronized ( APPENDS ) {
+            Appending a = APPENDS.get(key);
+            if ( a == null ) {
+                a = new Appending();
+                try {
+                    a.end = ch.size();
+                }
+                catch ( IOException ex ) {
+                    throw FileException.ioError("Error getting the size of the file: " + key, ex);
+                }
+                APPENDS.put(key, a);
+            }
+            long position = a.end;
+            a.end += length;
+            ++a.pending;
+            return position;
+        }
+    }
+
+    /**
+     * Release a reservation, once its append is complete (or has failed).
+     */
+    private static void release(String key)
+    {
+        synchronized ( APPENDS ) {
+            Appending a = APPENDS.get(key);
+            if ( --a.pending == 0 ) {
+                APPENDS.remove(key);
+            }
+        }
+    }
+
+    private static String key(String file)
+            throws FileException
+    {
+        try {
+            return new File(file).getCanonicalPath();
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error resolving the path of the file: " + file, ex);
+        }
+    }
+
+    private static void close(String file, AsynchronousFileChannel ch)
+            throws FileException
+    {
+        try {
+            ch.close();
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error closing the file: " + file, ex);
+        }
+    }
+
+    /**
+     * Write a buffer at a position in a channel, one asynchronous write at a time.
+     */
+    private static class Writing<A>
+            implements CompletionHandler<Integer, Void>
+    {
+        public Writing(String file, String key, AsynchronousFileChannel ch, ByteBuffer buf, long offset,
+                       A attachment, CompletionHandler<Void, ? super A> handler)
+        {
+            myFile = file;
+            myKey = key;
+            myChannel = ch;
+            myBuffer = buf;
+            myOffset = offset - buf.position();
+            myAttachment = attachment;
+            myHandler = handler;
+        }
+
+        public void next()
+        {
+            if ( myBuffer.hasRemaining() ) {
+                myChannel.write(myBuffer, myOffset + myBuffer.position(), null, this);
+                return;
+            }
+            try {
+                finish();
+            }
+            catch ( FileException ex ) {
+                myHandler.failed(ex, myAttachment);
+                return;
+            }
+            myHandler.completed(null, myAttachment);
+        }
+
+        @Override
+        public void completed(Integer written, Void nothing)
+        {
+            next();
+        }
+
+        @Override
+        public void failed(Throwable ex, Void nothing)
+        {
+            try {
+                finish();
+            }
+            catch ( FileException ignored ) {
+                // report the original error
+            }
+            myHandler.failed(FileException.ioError("Error writing to the file: " + myFile, ex), myAttachment);
+        }
+
+        /**
+         * Close the file, and release the range reserved by an append.
+         */
+        private void finish()
+                throws FileException
+        {
+            try {
+                close(myFile, myChannel);
+            }
+            finally {
+                if ( myKey != null ) {
+                    release(myKey);
+                }
+            }
+        }
+
+        private final String myFile;
+        /** The key of the file, for an append, or null. */
+        private final String myKey;
+        private final AsynchronousFileChannel myChannel;
+        private final ByteBuffer myBuffer;
+        /** The position in the file of the start of the buffer. */
+        private final long myOffset;
+        private final A myAttachment;
+        private final CompletionHandler<Void, ? super A> myHandler;
+    }
+
+    /**
+     * The appends in flight to one file.  Guarded by {@link #APPENDS}.
+     */
+    private static class Appending
+    {
+        /** The end of the last range reserved. */
+        public long end;
+        public int pending = 0;
+    }
+
+    /** The appends in flight, by canonical path, for all instances. */
+    private static final Map<String, Appending> APPENDS = new HashMap<>();
+
+    private final ExecutorService myExecutor;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
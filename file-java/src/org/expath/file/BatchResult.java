@@ -0,0 +1,89 @@
+/****************************************************************************/
+/*  File:       BatchResult.java                                            */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+/**
+ * The result of reading one file in a batch, either a value or an error.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ * @see Read#tryReadTexts(java.util.List, java.nio.charset.Charset)
+ */
+public class BatchResult<V>
+{
+    private BatchResult(String file, V value, FileException error)
+    {
+        myFile = file;
+        myValue = value;
+        myError = error;
+    }
+
+    static <V> BatchResult<V> success(String file, V value)
+    {
+        return new BatchResult<>(file, value, null);
+    }
+
+    static <V> BatchResult<V> failure(String file, FileException error)
+    {
+        return new BatchResult<>(file, null, error);
+    }
+
+    public String getFile()
+    {
+        return myFile;
+    }
+
+    public boolean isSuccess()
+    {
+        return myError == null;
+    }
+
+    /**
+     * The value read from the file, or null if it could not be read.
+     */
+    public V getValue()
+    {
+        return myValue;
+    }
+
+    /**
+     * The error reading the file, or null if it has been read.
+     */
+    public FileException getError()
+    {
+        return myError;
+    }
+
+    private final String myFile;
+    private final V myValue;
+    private final FileException myError;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,187 @@
+/****************************************************************************/
+/*  File:       BinaryReader.java                                           */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read ranges of bytes from a file, through one open channel.
+ *
+ * Each range is read with positional reads, straight into an array of the
+ * exact size of the range, so several ranges can be read without skipping nor
+ * reopening the file.  Ranges of at least the map threshold of the creating
+ * {@link Read} object are read through a memory mapping instead.
+ *
+ * Positional reads do not change the state of the channel, so an instance can
+ * be shared between threads.  Get one with {@link Read#openBinary(String)}, and
+ * close it when done.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class BinaryReader
+        implements AutoCloseable
+{
+    BinaryReader(String file, FileChannel channel, long map_threshold)
+    {
+        myFile = file;
+        myChannel = channel;
+        myMapThreshold = map_threshold;
+    }
+
+    public String getFile()
+    {
+        return myFile;
+    }
+
+    public long size()
+            throws FileException
+    {
+        try {
+            return myChannel.size();
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error getting the size of the file: " + myFile, ex);
+        }
+    }
+
+    /**
+     * Read the bytes from {@code offset} to the end of the file.
+     */
+    public byte[] read(long offset)
+            throws FileException
+    {
+        if ( offset < 0 ) {
+            throw FileException.outOfRange("Offset is negative: " + offset);
+        }
+        long size = size();
+        if ( offset > size ) {
+            throw FileException.outOfRange("Offset (" + offset + ") is greater than the file size (" + size + "): " + myFile);
+        }
+        return doRead(offset, size - offset);
+    }
+
+    /**
+     * Read {@code length} bytes, starting at {@code offset}.
+     */
+    public byte[] read(long offset, long length)
+            throws FileException
+    {
+        checkRange(offset, length);
+        return doRead(offset, length);
+    }
+
+    /**
+     * Map {@code length} bytes in memory, read-only, starting at {@code offset}.
+     *
+     * The mapping stays valid after this reader has been closed, until the
+     * buffer is garbage collected.
+     */
+    public ByteBuffer map(long offset, long length)
+            throws FileException
+    {
+        checkRange(offset, length);
+        if ( length > Integer.MAX_VALUE ) {
+            throw FileException.outOfRange("Length is too large to be mapped at once: " + length);
+        }
+        try {
+            return myChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error mapping the file: " + myFile, ex);
+        }
+    }
+
+    @Override
+    public void close()
+            throws FileException
+    {
+        try {
+            myChannel.close();
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error closing the file: " + myFile, ex);
+        }
+    }
+
+    private void checkRange(long offset, long length)
+            throws FileException
+    {
+        if ( offset < 0 ) {
+            throw FileException.outOfRange("Offset is negative: " + offset);
+        }
+        if ( length < 0 ) {
+            throw FileException.outOfRange("Length is negative: " + length);
+        }
+        long size = size();
+        if ( offset + length > size ) {
+            throw FileException.outOfRange("Range (" + offset + "+" + length
+                    + ") exceeds the file size (" + size + "): " + myFile);
+        }
+    }
+
+    // precond: the range is within the file bounds
+    private byte[] doRead(long offset, long length)
+            throws FileException
+    {
+        if ( length > MAX_ARRAY_SIZE ) {
+            throw FileException.ioError("Content too large to fit in an array (" + length + "): " + myFile);
+        }
+        byte[] bytes = new byte[(int) length];
+        if ( length >= myMapThreshold ) {
+            map(offset, length).get(bytes);
+            return bytes;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        try {
+            while ( buf.hasRemaining() ) {
+                int read = myChannel.read(buf, offset + buf.position());
+                if ( read < 0 ) {
+                    throw FileException.outOfRange("Not enough bytes in file, read: " + buf.position());
+                }
+            }
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error reading from the file: " + myFile, ex);
+        }
+        return bytes;
+    }
+
+    /** Some VMs reserve header words in an array, stay on the safe side. */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final String myFile;
+    private final FileChannel myChannel;
+    private final long myMapThreshold;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,191 @@
+/****************************************************************************/
+/*  File:       BufferPool.java                                             */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of byte buffers, used by the read, write and copy loops.
+ *
+ * All buffers of a pool have the same size.  Heap buffers are backed by an
+ * array, direct buffers are better suited to transfer bytes between channels.
+ * Each thread keeps one buffer of each kind for itself, so acquiring and
+ * releasing a buffer in the same thread does not involve any synchronization.
+ * Beyond that, at most {@code max_retained} buffers of each kind are kept in a
+ * shared queue, the others are left to the garbage collector.
+ *
+ * A buffer must be released only once, and not be used after it is released.
+ * It is fine not to release a buffer (e.g. on an error path).
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class BufferPool
+{
+    public BufferPool(int buffer_size, int max_retained)
+    {
+        if ( buffer_size < 1 ) {
+            throw new IllegalArgumentException("Buffer size must be at least 1: " + buffer_size);
+        }
+        myBufferSize = buffer_size;
+        myHeap = new Kind(false, max_retained);
+        myDirect = new Kind(true, max_retained);
+    }
+
+    /**
+     * The pool used by all the classes of this package.
+     */
+    public static BufferPool getDefault()
+    {
+        return theDefault;
+    }
+
+    public static void setDefault(BufferPool pool)
+    {
+        Util.ensureNotNull(pool, "pool cannot be null");
+        theDefault = pool;
+    }
+
+    public int getBufferSize()
+    {
+        return myBufferSize;
+    }
+
+    /**
+     * Return a cleared heap buffer, backed by an array.
+     */
+    public ByteBuffer acquireHeap()
+    {
+        return myHeap.acquire();
+    }
+
+    /**
+     * Return a cleared direct buffer.
+     */
+    public ByteBuffer acquireDirect()
+    {
+        return myDirect.acquire();
+    }
+
+    /**
+     * Give a buffer back to the pool.
+     * 
+     * Buffers which do not come from this pool (e.g. with another size) are
+     * simply ignored.
+     */
+    public void release(ByteBuffer buf)
+    {
+        if ( buf == null || buf.capacity() != myBufferSize || buf.isReadOnly() ) {
+            return;
+        }
+        if ( buf.isDirect() ) {
+            myDirect.release(buf);
+        }
+        else {
+            myHeap.release(buf);
+        }
+    }
+
+    /**
+     * The buffers of one kind, either heap or direct.
+     */
+    private class Kind
+    {
+        public Kind(boolean direct, int max_retained)
+        {
+            myIsDirect = direct;
+            myMaxRetained = max_retained;
+        }
+
+        public ByteBuffer acquire()
+        {
+            ByteBuffer[] slot = myLocal.get();
+            ByteBuffer buf = slot[0];
+            if ( buf != null ) {
+                slot[0] = null;
+            }
+            else {
+                buf = myShared.poll();
+                if ( buf != null ) {
+                    myRetained.decrementAndGet();
+                }
+                else {
+                    buf = myIsDirect
+                            ? ByteBuffer.allocateDirect(myBufferSize)
+                            : ByteBuffer.allocate(myBufferSize);
+                }
+            }
+            buf.clear();
+            return buf;
+        }
+
+        public void release(ByteBuffer buf)
+        {
+            ByteBuffer[] slot = myLocal.get();
+            if ( slot[0] == null ) {
+                slot[0] = buf;
+            }
+            else if ( myRetained.incrementAndGet() <= myMaxRetained ) {
+                myShared.offer(buf);
+            }
+            else {
+                myRetained.decrementAndGet();
+            }
+        }
+
+        private final boolean myIsDirect;
+        private final int myMaxRetained;
+        /** The buffer kept by the current thread, if any. */
+        private final ThreadLocal<ByteBuffer[]> myLocal = new ThreadLocal<ByteBuffer[]>() {
+            @Override
+            protected ByteBuffer[] initialValue() {
+                return new ByteBuffer[1];
+            }
+        };
+        private final Queue<ByteBuffer> myShared = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger myRetained = new AtomicInteger();
+    }
+
+    /** The size of the buffers of the default pool: 64 KiB. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /** The maximum number of buffers of each kind retained by the default pool. */
+    public static final int DEFAULT_MAX_RETAINED = 32;
+
+    private static volatile BufferPool theDefault = new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_RETAINED);
+
+    private final int myBufferSize;
+    private final Kind myHeap;
+    private final Kind myDirect;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,141 @@
+/****************************************************************************/
+/*  File:       ChannelOutputStream.java                                    */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An output stream writing straight to a channel, through a direct buffer.
+ *
+ * Serializers tend to write many tiny chunks.  They are gathered in the buffer,
+ * and the channel is written only when it is full, without the extra copy a
+ * heap buffer would involve.  Chunks larger than the buffer are written as is.
+ * The buffer comes from a {@link BufferPool}, and is given back when the stream
+ * is closed.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+class ChannelOutputStream
+        extends OutputStream
+{
+    public ChannelOutputStream(WritableByteChannel out, BufferPool pool)
+    {
+        myOut = out;
+        myPool = pool;
+        myBuffer = pool.acquireDirect();
+    }
+
+    @Override
+    public void write(int b)
+            throws IOException
+    {
+        ensureOpen();
+        if ( ! myBuffer.hasRemaining() ) {
+            drain();
+        }
+        myBuffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len)
+            throws IOException
+    {
+        ensureOpen();
+        if ( len > myBuffer.remaining() ) {
+            drain();
+        }
+        if ( len >= myBuffer.capacity() ) {
+            ByteBuffer chunk = ByteBuffer.wrap(b, off, len);
+            while ( chunk.hasRemaining() ) {
+                myOut.write(chunk);
+            }
+        }
+        else {
+            myBuffer.put(b, off, len);
+        }
+    }
+
+    /**
+     * Write the buffered bytes to the channel.  The channel itself is not forced.
+     */
+    @Override
+    public void flush()
+            throws IOException
+    {
+        ensureOpen();
+        drain();
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        if ( myBuffer == null ) {
+            return;
+        }
+        try {
+            drain();
+        }
+        finally {
+            myPool.release(myBuffer);
+            myBuffer = null;
+            myOut.close();
+        }
+    }
+
+    private void ensureOpen()
+            throws IOException
+    {
+        if ( myBuffer == null ) {
+            throw new IOException("The stream is closed");
+        }
+    }
+
+    private void drain()
+            throws IOException
+    {
+        myBuffer.flip();
+        while ( myBuffer.hasRemaining() ) {
+            myOut.write(myBuffer);
+        }
+        myBuffer.clear();
+    }
+
+    private final WritableByteChannel myOut;
+    private final BufferPool myPool;
+    /** Null once the stream is closed. */
+    private ByteBuffer myBuffer;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,406 @@
+/****************************************************************************/
+/*  File:       Checksum.java                                               */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compute the checksum of a file, without loading it in memory.
+ *
+ * The file is read by chunks, with positional reads into pooled buffers, and
+ * each chunk is hashed as soon as it is read.  A CRC32C can be computed for
+ * several ranges independently, then combined, so for files of at least
+ * {@link #getParallelThreshold()} bytes, the ranges are hashed in parallel.
+ * MD5 and SHA-256 are inherently sequential.
+ *
+ * An instance can be shared between threads.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class Checksum
+{
+    public enum Algorithm
+    {
+        CRC32C("CRC32C"),
+        MD5("MD5"),
+        SHA_256("SHA-256");
+
+        private Algorithm(String name)
+        {
+            myName = name;
+        }
+
+        public String getName()
+        {
+            return myName;
+        }
+
+        /**
+         * Return the algorithm with the name {@code name}, or null if there is none.
+         *
+         * The name is not case-sensitive, and the dash in "SHA-256" is optional.
+         */
+        public static Algorithm forName(String name)
+        {
+            for ( Algorithm a : values() ) {
+                if ( a.myName.equalsIgnoreCase(name) || a.myName.replace("-", "").equalsIgnoreCase(name) ) {
+                    return a;
+                }
+            }
+            return null;
+        }
+
+        private final String myName;
+    }
+
+    /**
+     * The pool used to compute the CRC32C of large files.
+     *
+     * If not set, a shared pool with one thread per core is used.
+     */
+    public ForkJoinPool getParallelPool()
+    {
+        return myPool;
+    }
+
+    public void setParallelPool(ForkJoinPool pool)
+    {
+        myPool = pool;
+    }
+
+    public long getParallelThreshold()
+    {
+        return myParallelThreshold;
+    }
+
+    public void setParallelThreshold(long threshold)
+    {
+        myParallelThreshold = threshold;
+    }
+
+    public byte[] checksum(String file, String algorithm)
+            throws FileException
+    {
+        Algorithm a = Algorithm.forName(algorithm);
+        if ( a == null ) {
+            throw FileException.unknownAlgorithm("Unknown checksum algorithm: " + algorithm);
+        }
+        return checksum(file, a);
+    }
+
+    /**
+     * Return the checksum of a file.  A CRC32C is returned as 4 bytes, big-endian.
+     */
+    public byte[] checksum(String file, Algorithm algorithm)
+            throws FileException
+    {
+        if ( algorithm == Algorithm.CRC32C ) {
+            int crc = crc32c(file);
+            return new byte[] { (byte) (crc >>> 24), (byte) (crc >>> 16), (byte) (crc >>> 8), (byte) crc };
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm.getName());
+        }
+        catch ( NoSuchAlgorithmException ex ) {
+            throw new IllegalStateException("Digest algorithm not provided by the JVM: " + algorithm.getName(), ex);
+        }
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buf = pool.acquireDirect();
+        try ( FileChannel ch = Util.openReadChannel(file) ) {
+            long pos = 0;
+            int read;
+            while ( (read = ch.read(buf, pos)) >= 0 ) {
+                pos += read;
+                buf.flip();
+                digest.update(buf);
+                buf.clear();
+            }
+            return digest.digest();
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error reading from the file: " + file, ex);
+        }
+        finally {
+            pool.release(buf);
+        }
+    }
+
+    /**
+     * Return the checksum of a file, as lowercase hexadecimal digits.
+     */
+    public String checksumHex(String file, Algorithm algorithm)
+            throws FileException
+    {
+        byte[] sum = checksum(file, algorithm);
+        char[] hex = new char[sum.length * 2];
+        for ( int i = 0; i < sum.length; ++i ) {
+            hex[2 * i] = HEX_DIGITS[(sum[i] >>> 4) & 0x0F];
+            hex[2 * i + 1] = HEX_DIGITS[sum[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Return the CRC32C (Castagnoli) of a file.
+     */
+    public int crc32c(String file)
+            throws FileException
+    {
+        try ( FileChannel ch = Util.openReadChannel(file) ) {
+            long size = ch.size();
+            if ( size < myParallelThreshold ) {
+                return new CrcRange(ch, 0, size).call();
+            }
+            ForkJoinPool pool = myPool == null ? DefaultPool.INSTANCE : myPool;
+            long count = Math.max(1, Math.min(size / MIN_PARALLEL_CHUNK, pool.getParallelism() * 4L));
+            List<ForkJoinTask<Integer>> tasks = new ArrayList<>();
+            List<Long> lengths = new ArrayList<>();
+            long start = 0;
+            for ( long i = 1; i <= count; ++i ) {
+                long end = i == count ? size : i * size / count;
+                tasks.add(pool.submit(ForkJoinTask.adapt(new CrcRange(ch, start, end - start))));
+                lengths.add(end - start);
+                start = end;
+            }
+            int crc = 0;
+            for ( int i = 0; i < tasks.size(); ++i ) {
+                crc = combineCrc32c(crc, tasks.get(i).get(), lengths.get(i));
+            }
+            return crc;
+        }
+        catch ( ExecutionException ex ) {
+            if ( ex.getCause() instanceof FileException ) {
+                throw (FileException) ex.getCause();
+            }
+            throw FileException.ioError("Error reading from the file: " + file, ex.getCause());
+        }
+        catch ( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw FileException.ioError("Interrupted while reading from the file: " + file, ex);
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error reading from the file: " + file, ex);
+        }
+    }
+
+    /**
+     * Continue the CRC32C {@code crc} with some more bytes.  Start with 0.
+     *
+     * Use the "slicing-by-8" technique: 8 bytes are processed at each step,
+     * with one table lookup per byte.
+     */
+    static int updateCrc32c(int crc, byte[] bytes, int off, int len)
+    {
+        int[][] t = CRC_TABLES;
+        crc = ~crc;
+        int end = off + len;
+        for ( ; end - off >= 8; off += 8 ) {
+            int a = crc ^ ((bytes[off] & 0xFF)
+                    | (bytes[off + 1] & 0xFF) << 8
+                    | (bytes[off + 2] & 0xFF) << 16
+                    | (bytes[off + 3] & 0xFF) << 24);
+            crc = t[7][a & 0xFF]
+                    ^ t[6][(a >>> 8) & 0xFF]
+                    ^ t[5][(a >>> 16) & 0xFF]
+                    ^ t[4][a >>> 24]
+                    ^ t[3][bytes[off + 4] & 0xFF]
+                    ^ t[2][bytes[off + 5] & 0xFF]
+                    ^ t[1][bytes[off + 6] & 0xFF]
+                    ^ t[0][bytes[off + 7] & 0xFF];
+        }
+        for ( ; off < end; ++off ) {
+            crc = (crc >>> 8) ^ t[0][(crc ^ bytes[off]) & 0xFF];
+        }
+        return ~crc;
+    }
+
+    /**
+     * The CRC32C of two ranges one after the other, from the CRC32C of each.
+     *
+     * The CRC of the first range is shifted by {@code length2} zero bytes, by
+     * applying the matrix of the "one zero bit" operator, squared repeatedly,
+     * like zlib's {@code crc32_combine()}.
+     */
+    static int combineCrc32c(int crc1, int crc2, long length2)
+    {
+        if ( length2 <= 0 ) {
+            return crc1;
+        }
+        int[] even = new int[32];
+        int[] odd = new int[32];
+        // the operator for one zero bit
+        odd[0] = CRC32C_POLY;
+        int row = 1;
+        for ( int n = 1; n < 32; ++n ) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // the operators for two, then four zero bits
+        gf2Square(even, odd);
+        gf2Square(odd, even);
+        // apply the operators for each bit set in the length, in bytes
+        do {
+            gf2Square(even, odd);
+            if ( (length2 & 1) != 0 ) {
+                crc1 = gf2Times(even, crc1);
+            }
+            length2 >>>= 1;
+            if ( length2 == 0 ) {
+                break;
+            }
+            gf2Square(odd, even);
+            if ( (length2 & 1) != 0 ) {
+                crc1 = gf2Times(odd, crc1);
+            }
+            length2 >>>= 1;
+        }
+        while ( length2 != 0 );
+        return crc1 ^ crc2;
+    }
+
+    private static int gf2Times(int[] mat, int vec)
+    {
+        int sum = 0;
+        for ( int i = 0; vec != 0; ++i, vec >>>= 1 ) {
+            if ( (vec & 1) != 0 ) {
+                sum ^= mat[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2Square(int[] square, int[] mat)
+    {
+        for ( int n = 0; n < 32; ++n ) {
+            square[n] = gf2Times(mat, mat[n]);
+        }
+    }
+
+    private static int[][] makeCrcTables()
+    {
+        int[][] t = new int[8][256];
+        for ( int n = 0; n < 256; ++n ) {
+            int c = n;
+            for ( int k = 0; k < 8; ++k ) {
+                c = (c & 1) != 0 ? (c >>> 1) ^ CRC32C_POLY : c >>> 1;
+            }
+            t[0][n] = c;
+        }
+        for ( int n = 0; n < 256; ++n ) {
+            for ( int k = 1; k < 8; ++k ) {
+                int prev = t[k - 1][n];
+                t[k][n] = (prev >>> 8) ^ t[0][prev & 0xFF];
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Compute the CRC32C of a range of a file.
+     */
+    private static class CrcRange
+            implements Callable<Integer>
+    {
+        public CrcRange(FileChannel ch, long start, long length)
+        {
+            myChannel = ch;
+            myStart = start;
+            myLength = length;
+        }
+
+        @Override
+        public Integer call()
+                throws IOException
+        {
+            BufferPool pool = BufferPool.getDefault();
+            ByteBuffer buf = pool.acquireHeap();
+            try {
+                int crc = 0;
+                long pos = myStart;
+                long end = myStart + myLength;
+                while ( pos < end ) {
+                    buf.clear();
+                    if ( end - pos < buf.capacity() ) {
+                        buf.limit((int) (end - pos));
+                    }
+                    int read = myChannel.read(buf, pos);
+                    if ( read < 0 ) {
+                        // the file has been truncated meanwhile
+                        break;
+                    }
+                    crc = updateCrc32c(crc, buf.array(), 0, read);
+                    pos += read;
+                }
+                return crc;
+            }
+            finally {
+                pool.release(buf);
+            }
+        }
+
+        private final FileChannel myChannel;
+        private final long myStart;
+        private final long myLength;
+    }
+
+    /**
+     * The pool used when no pool is set, created when first used.
+     */
+    private static class DefaultPool
+    {
+        public static final ForkJoinPool INSTANCE = new ForkJoinPool();
+    }
+
+    /** The default size from which a CRC32C is computed in parallel: 16 MiB. */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 16L * 1024 * 1024;
+    /** The minimum size of a range of bytes hashed in parallel. */
+    private static final long MIN_PARALLEL_CHUNK = 1024 * 1024;
+    /** The Castagnoli polynomial, reversed. */
+    private static final int CRC32C_POLY = 0x82F63B78;
+    private static final int[][] CRC_TABLES = makeCrcTables();
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private volatile ForkJoinPool myPool = null;
+    private volatile long myParallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,52 @@
+/****************************************************************************/
+/*  File:       Compression.java                                            */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+/**
+ * The compression of the content of files.
+ *
+ * Only gzip is supported.  When reading, {@link #DETECT} decompresses files
+ * starting with the gzip magic number.  When writing, it compresses files
+ * whose name ends with {@code .gz}.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public enum Compression
+{
+    /** The content is read and written as is. */
+    NONE,
+    /** The content is always gzipped. */
+    GZIP,
+    /** The content is gzipped depending on the magic number or the file name. */
+    DETECT
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,230 @@
+/****************************************************************************/
+/*  File:       ContentCache.java                                           */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of file contents, with a budget in bytes.
+ *
+ * Entries are keyed by the path of the file, its identity (its file key, if
+ * the file system provides one), its size and its last modification time, so
+ * an entry is never used for a file that has changed since it was cached.
+ * When the budget is exceeded, the least recently used entries are evicted.
+ *
+ * Set it on a {@link Read} object to use it.  An instance can be shared by
+ * several of them, and between threads.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class ContentCache
+{
+    public ContentCache(long budget)
+    {
+        myBudget = budget;
+    }
+
+    /** The maximum number of bytes held by the cache. */
+    public long getBudget()
+    {
+        return myBudget;
+    }
+
+    /** The number of bytes currently held by the cache. */
+    public synchronized long getWeight()
+    {
+        return myWeight;
+    }
+
+    public synchronized int getEntryCount()
+    {
+        return myEntries.size();
+    }
+
+    public synchronized long getHits()
+    {
+        return myHits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return myMisses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return myEvictions;
+    }
+
+    public synchronized void clear()
+    {
+        myEntries.clear();
+        myWeight = 0;
+    }
+
+    /**
+     * The key for the current state of a file, for a given variant of its content.
+     *
+     * The variant distinguishes different forms of the same content (e.g. its
+     * raw bytes, or its text decoded with a specific encoding).
+     */
+    static Key key(String file, String variant)
+            throws FileException
+    {
+        File f = Util.openFile(file);
+        Path p = f.toPath();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+            return new Key(
+                    p.toAbsolutePath().normalize().toString(),
+                    attrs.fileKey(),
+                    attrs.size(),
+                    attrs.lastModifiedTime().toMillis(),
+                    variant);
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error reading the attributes of the file: " + file, ex);
+        }
+    }
+
+    synchronized Object get(Key key)
+    {
+        Entry entry = myEntries.get(key);
+        if ( entry == null ) {
+            ++myMisses;
+            return null;
+        }
+        ++myHits;
+        return entry.value;
+    }
+
+    /**
+     * Add an entry, unless it is larger than the budget on its own.
+     *
+     * Return whether the entry has been added.
+     */
+    synchronized boolean put(Key key, Object value, long weight)
+    {
+        if ( weight > myBudget ) {
+            return false;
+        }
+        Entry old = myEntries.put(key, new Entry(value, weight));
+        if ( old != null ) {
+            myWeight -= old.weight;
+        }
+        myWeight += weight;
+        Iterator<Entry> it = myEntries.values().iterator();
+        while ( myWeight > myBudget && it.hasNext() ) {
+            Entry eldest = it.next();
+            it.remove();
+            myWeight -= eldest.weight;
+            ++myEvictions;
+        }
+        return true;
+    }
+
+    static class Key
+    {
+        public Key(String path, Object id, long size, long modified, String variant)
+        {
+            myPath = path;
+            myId = id;
+            mySize = size;
+            myModified = modified;
+            myVariant = variant;
+        }
+
+        public long getSize()
+        {
+            return mySize;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if ( ! (obj instanceof Key) ) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return myPath.equals(other.myPath)
+                    && (myId == null ? other.myId == null : myId.equals(other.myId))
+                    && mySize == other.mySize
+                    && myModified == other.myModified
+                    && myVariant.equals(other.myVariant);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = myPath.hashCode();
+            hash = 31 * hash + (myId == null ? 0 : myId.hashCode());
+            hash = 31 * hash + (int) (mySize ^ (mySize >>> 32));
+            hash = 31 * hash + (int) (myModified ^ (myModified >>> 32));
+            hash = 31 * hash + myVariant.hashCode();
+            return hash;
+        }
+
+        private final String myPath;
+        private final Object myId;
+        private final long mySize;
+        private final long myModified;
+        private final String myVariant;
+    }
+
+    private static class Entry
+    {
+        public Entry(Object value, long weight)
+        {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        public final Object value;
+        public final long weight;
+    }
+
+    private final long myBudget;
+    /** In access order, so the first entries are the least recently used. */
+    private final Map<Key, Entry> myEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long myWeight = 0;
+    private long myHits = 0;
+    private long myMisses = 0;
+    private long myEvictions = 0;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
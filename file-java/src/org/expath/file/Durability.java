@@ -0,0 +1,67 @@
+/****************************************************************************/
+/*  File:       Durability.java                                             */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+/**
+ * How far the content of a file is forced to disk, before a write returns.
+ *
+ * Each level adds latency to every write, for a stronger guarantee after a
+ * crash or a power loss.  The time spent syncing is accumulated by
+ * {@link Write#getSyncTime()}, to measure that cost on a given system.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public enum Durability
+{
+    /**
+     * Nothing is forced, the OS writes the content back when it sees fit.
+     *
+     * No added latency, but the last writes can be lost by a crash of the OS.
+     */
+    NONE,
+    /**
+     * The content is forced to disk, like {@code fdatasync()}.
+     *
+     * Costs one flush of the device per write, from well under a millisecond
+     * on a battery-backed SSD to tens of milliseconds on a spinning disk.  The
+     * metadata needed to read the content back (like the size) is forced too,
+     * but not the rest (like the modification time).
+     */
+    DATA,
+    /**
+     * The content and all the metadata are forced to disk, like {@code fsync()}.
+     *
+     * Costs at least as much as {@link #DATA}, usually a bit more.
+     */
+    FULL
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
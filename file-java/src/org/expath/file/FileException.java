@@ -39,6 +39,7 @@ public class FileException
         NO_DIR,
         IS_DIR,
         UNKNOWN_ENCODING,
+        UNKNOWN_ALGORITHM,
         OUT_OF_RANGE,
         IO_ERROR
     }
@@ -87,6 +88,14 @@ public class FileException
         return new FileException(Type.UNKNOWN_ENCODING, msg, cause);
     }
 
+    // filex:unknown-algorithm (an extension, not part of the spec)
+    public static FileException unknownAlgorithm(String msg) {
+        return new FileException(Type.UNKNOWN_ALGORITHM, msg);
+    }
+    public static FileException unknownAlgorithm(String msg, Throwable cause) {
+        return new FileException(Type.UNKNOWN_ALGORITHM, msg, cause);
+    }
+
     // file:out-of-range
     public static FileException outOfRange(String msg) {
         return new FileException(Type.OUT_OF_RANGE, msg);
@@ -0,0 +1,362 @@
+/****************************************************************************/
+/*  File:       HandleCache.java                                            */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.WeakHashMap;
+
+/**
+ * Keep files open between writes, to save the cost of opening and closing them.
+ *
+ * The files are opened in append mode, and kept by canonical path.  At most
+ * {@code max_handles} files are kept open: beyond that, the least recently
+ * used one is closed.  A file not used for {@code max_idle} milliseconds is
+ * closed as well.  Closing a file hands its content over to the OS, forcing it
+ * to disk is the job of the durability level of the writes.
+ *
+ * {@link InputOutput#delete} and {@link InputOutput#move} close the files
+ * they touch in all the caches, as writing to a file open before it was
+ * deleted or replaced would silently lose the content.  Other processes must
+ * not delete or replace the files while they are cached.
+ *
+ * Set it on a {@link Write} object to use it.  Call {@link #flush()} at the
+ * end of a transformation, to close all the files, and {@link #close()} when
+ * the cache is not used anymore.  An instance can be shared by several
+ * {@link Write} objects, and between threads.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class HandleCache
+        implements AutoCloseable
+{
+    public HandleCache()
+    {
+        this(DEFAULT_MAX_HANDLES, DEFAULT_MAX_IDLE);
+    }
+
+    public HandleCache(int max_handles, long max_idle)
+    {
+        if ( max_handles < 1 ) {
+            throw new IllegalArgumentException("The max number of handles must be at least 1: " + max_handles);
+        }
+        if ( max_idle < 1 ) {
+            throw new IllegalArgumentException("The max idle time must be at least 1 ms: " + max_idle);
+        }
+        myMaxHandles = max_handles;
+        myMaxIdle = max_idle;
+        myTimer = new Timer("expath-file-handles", true);
+        myTimer.schedule(new Sweeper(this), max_idle, Math.max(max_idle / 2, 1));
+        ALL.add(this);
+    }
+
+    public int getMaxHandles()
+    {
+        return myMaxHandles;
+    }
+
+    /** The time after which an unused file is closed, in milliseconds. */
+    public long getMaxIdle()
+    {
+        return myMaxIdle;
+    }
+
+    public synchronized int getHandleCount()
+    {
+        return myHandles.size();
+    }
+
+    /**
+     * Close all the files not being written to.
+     */
+    public void flush()
+            throws FileException
+    {
+        List<Handle> closed = new ArrayList<>();
+        synchronized ( this ) {
+            Iterator<Handle> it = myHandles.values().iterator();
+            while ( it.hasNext() ) {
+                Handle h = it.next();
+                if ( ! h.busy ) {
+                    it.remove();
+                    closed.add(h);
+                }
+            }
+        }
+        closeAll(closed);
+    }
+
+    /**
+     * Close all the files, and stop evicting idle files.
+     */
+    @Override
+    public void close()
+            throws FileException
+    {
+        myTimer.cancel();
+        ALL.remove(this);
+        flush();
+    }
+
+    /**
+     * Close the file {@code path}, or all the files under it if it is a directory.
+     *
+     * A file being written to is closed once the write is complete.
+     */
+    public void invalidate(String path)
+            throws FileException
+    {
+        String key = key(path);
+        String prefix = key + File.separator;
+        List<Handle> closed = new ArrayList<>();
+        synchronized ( this ) {
+            Iterator<Map.Entry<String, Handle>> it = myHandles.entrySet().iterator();
+            while ( it.hasNext() ) {
+                Map.Entry<String, Handle> e = it.next();
+                if ( e.getKey().equals(key) || e.getKey().startsWith(prefix) ) {
+                    it.remove();
+                    Handle h = e.getValue();
+                    if ( h.busy ) {
+                        h.stale = true;
+                    }
+                    else {
+                        closed.add(h);
+                    }
+                }
+            }
+        }
+        closeAll(closed);
+    }
+
+    /**
+     * Invalidate a path in all the caches.
+     */
+    static void invalidateAll(String path)
+            throws FileException
+    {
+        List<HandleCache> caches;
+        synchronized ( ALL ) {
+            caches = new ArrayList<>(ALL);
+        }
+        for ( HandleCache c : caches ) {
+            c.invalidate(path);
+        }
+    }
+
+    /**
+     * Return the handle of a file, opening it if needed, for exclusive use.
+     *
+     * It must be released once the write is complete.
+     */
+    Handle acquire(String file)
+            throws FileException
+    {
+        String key = key(file);
+        List<Handle> evicted = new ArrayList<>();
+        Handle h;
+        synchronized ( this ) {
+            while ( true ) {
+                h = myHandles.get(key);
+                if ( h == null || ! h.busy ) {
+                    break;
+                }
+                try {
+                    wait();
+                }
+                catch ( InterruptedException ex ) {
+                    Thread.currentThread().interrupt();
+                    throw FileException.ioError("Interrupted while waiting for the file: " + file, ex);
+                }
+            }
+            if ( h == null ) {
+                h = new Handle(key, Util.openWriteChannel(file, true));
+                myHandles.put(key, h);
+                Iterator<Handle> it = myHandles.values().iterator();
+                while ( myHandles.size() > myMaxHandles && it.hasNext() ) {
+                    Handle eldest = it.next();
+                    if ( ! eldest.busy ) {
+                        it.remove();
+                        evicted.add(eldest);
+                    }
+                }
+            }
+            h.busy = true;
+        }
+        closeAll(evicted);
+        return h;
+    }
+
+    /**
+     * Release a handle, keeping it open or not (e.g. after an error).
+     */
+    void release(Handle h, boolean keep)
+            throws FileException
+    {
+        synchronized ( this ) {
+            h.busy = false;
+            h.lastUsed = System.currentTimeMillis();
+            if ( ! keep && ! h.stale ) {
+                myHandles.remove(h.key);
+            }
+            notifyAll();
+        }
+        if ( h.stale || ! keep ) {
+            Util.close(h.channel);
+        }
+    }
+
+    /**
+     * Close the files not used since {@link #getMaxIdle()} milliseconds.
+     */
+    private void sweep()
+    {
+        long limit = System.currentTimeMillis() - myMaxIdle;
+        List<Handle> closed = new ArrayList<>();
+        synchronized ( this ) {
+            Iterator<Handle> it = myHandles.values().iterator();
+            while ( it.hasNext() ) {
+                Handle h = it.next();
+                if ( ! h.busy && h.lastUsed < limit ) {
+                    it.remove();
+                    closed.add(h);
+                }
+            }
+        }
+        try {
+            closeAll(closed);
+        }
+        catch ( FileException ex ) {
+            // nobody to report to, the content has been written already anyway
+        }
+    }
+
+    private static void closeAll(List<Handle> handles)
+            throws FileException
+    {
+        FileException error = null;
+        for ( Handle h : handles ) {
+            try {
+                Util.close(h.channel);
+            }
+            catch ( FileException ex ) {
+                error = ex;
+            }
+        }
+        if ( error != null ) {
+            throw error;
+        }
+    }
+
+    private static String key(String file)
+            throws FileException
+    {
+        try {
+            return new File(file).getCanonicalPath();
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error resolving the path of the file: " + file, ex);
+        }
+    }
+
+    /**
+     * An open file.  The mutable fields are guarded by the cache.
+     */
+    static class Handle
+    {
+        public Handle(String key, FileChannel channel)
+        {
+            this.key = key;
+            this.channel = channel;
+        }
+
+        public final String key;
+        public final FileChannel channel;
+        public long lastUsed = System.currentTimeMillis();
+        /** Whether a write is using it. */
+        public boolean busy = false;
+        /** Whether it has been invalidated while busy. */
+        public boolean stale = false;
+    }
+
+    /**
+     * Evict the idle files, without keeping the cache from being garbage collected.
+     */
+    private static class Sweeper
+            extends TimerTask
+    {
+        public Sweeper(HandleCache cache)
+        {
+            myCache = new WeakReference<>(cache);
+        }
+
+        @Override
+        public void run()
+        {
+            HandleCache cache = myCache.get();
+            if ( cache == null ) {
+                cancel();
+            }
+            else {
+                cache.sweep();
+            }
+        }
+
+        private final WeakReference<HandleCache> myCache;
+    }
+
+    /** The default max number of files kept open. */
+    public static final int DEFAULT_MAX_HANDLES = 64;
+    /** The default time after which an unused file is closed: 5 seconds. */
+    public static final long DEFAULT_MAX_IDLE = 5000;
+
+    /** All the caches not closed yet, to invalidate paths in all of them. */
+    private static final Set<HandleCache> ALL
+            = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<HandleCache, Boolean>()));
+
+    private final int myMaxHandles;
+    private final long myMaxIdle;
+    private final Timer myTimer;
+    /** In access order, so the first entries are the least recently used. */
+    private final Map<String, Handle> myHandles = new LinkedHashMap<>(16, 0.75f, true);
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -11,14 +11,13 @@
 package org.expath.file;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -51,6 +50,8 @@ public class InputOutput
         if ( ! src.exists() ) {
             throw FileException.notFound("File not found: " + source);
         }
+        // the files open on the target, or on any file under it, would be lost
+        HandleCache.invalidateAll(target);
         if ( src.isDirectory() ) {
             copyDir(src, trg);
         }
@@ -146,22 +147,36 @@ public class InputOutput
                 copyDir(file, copied);
             }
             else {
-                try {
-                    byte[] buffer = new byte[4096];
-                    InputStream in = new FileInputStream(file);
-                    OutputStream out = new FileOutputStream(copied);
-                    int count;
-                    while ( (count = in.read(buffer)) > 0 ) {
-                        out.write(buffer, 0, count);
-                    }
-                }
-                catch ( IOException ex ) {
-                    throw new RuntimeException("Error copying '" + file + "' to '" + copied + "'", ex);
-                }
+                copyContent(file, copied);
             }
         }
     }
 
+    /**
+     * Copy the content of a file to a new file, through a pooled direct buffer.
+     */
+    private void copyContent(File source, File target)
+            throws FileException
+    {
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buffer = pool.acquireDirect();
+        try ( FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+              FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE,
+                      StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING) ) {
+            while ( in.read(buffer) >= 0 || buffer.position() > 0 ) {
+                buffer.flip();
+                out.write(buffer);
+                buffer.compact();
+            }
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error copying '" + source + "' to '" + target + "'", ex);
+        }
+        finally {
+            pool.release(buffer);
+        }
+    }
+
     // precond: source exists and is a regular file
     private void copyFile(File source, File target)
             throws FileException
@@ -357,6 +372,7 @@ public class InputOutput
             throws FileException
     {
         File f = new File(path);
+        HandleCache.invalidateAll(path);
         if ( f.isDirectory() ) {
             if ( f.list().length > 0 ) {
                 // non-empty dir
@@ -536,6 +552,9 @@ public class InputOutput
                 throw FileException.notFound("File not found: " + source);
             }
         }
+        // the files open on the source, or on the file it replaces, would be lost
+        HandleCache.invalidateAll(source);
+        HandleCache.invalidateAll(target);
         // do it!
         if ( src.isDirectory() ) {
             moveDir(src, trg);
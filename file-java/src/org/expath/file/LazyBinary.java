@@ -0,0 +1,142 @@
+/****************************************************************************/
+/*  File:       LazyBinary.java                                             */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * The content of a binary file, read only when it is actually needed.
+ *
+ * The identity of the file (its path, file key, size and last modification
+ * time) is captured when this object is created.  Its size is known without
+ * reading the file.  Each time the content is needed, the file is checked to
+ * still be the same one, and an error is raised if it has changed meanwhile.
+ * Once read, the bytes are kept by this object.
+ *
+ * Get one with {@link Read#readBinaryLazy(String)}.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class LazyBinary
+{
+    LazyBinary(Read read, String file)
+            throws FileException
+    {
+        myRead = read;
+        myFile = file;
+        myKey = ContentCache.key(file, VARIANT);
+    }
+
+    public String getFile()
+    {
+        return myFile;
+    }
+
+    /**
+     * The size of the file when this object was created, in bytes.
+     */
+    public long getSize()
+    {
+        return myKey.getSize();
+    }
+
+    /**
+     * Whether the content has been read already.
+     */
+    public boolean isLoaded()
+    {
+        return myBytes != null;
+    }
+
+    /**
+     * Raise an error if the file is not the same as when this object was created.
+     */
+    public void check()
+            throws FileException
+    {
+        if ( ! myKey.equals(ContentCache.key(myFile, VARIANT)) ) {
+            throw FileException.ioError("The file has changed since it was opened: " + myFile);
+        }
+    }
+
+    /**
+     * Return the content of the file, reading it the first time.
+     *
+     * The returned array must not be modified.
+     */
+    public byte[] getBytes()
+            throws FileException
+    {
+        byte[] bytes = myBytes;
+        if ( bytes == null ) {
+            check();
+            bytes = myRead.readBinary(myFile);
+            // it could have changed while being read
+            check();
+            myBytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode the content in base64, without keeping it if it has not been read yet.
+     */
+    public void writeBase64(Appendable out)
+            throws FileException
+    {
+        byte[] bytes = myBytes;
+        if ( bytes != null ) {
+            try {
+                char[] chars = new char[(bytes.length + 2) / 3 * 4];
+                int length = Util.encodeBase64(bytes, bytes.length, chars);
+                out.append(CharBuffer.wrap(chars, 0, length));
+            }
+            catch ( IOException ex ) {
+                throw FileException.ioError("Error encoding the file in base64: " + myFile, ex);
+            }
+            return;
+        }
+        check();
+        myRead.readBinaryBase64(myFile, out);
+        check();
+    }
+
+    /** Nothing is cached under this key, it is only used to compare file states. */
+    private static final String VARIANT = "lazy";
+
+    private final Read myRead;
+    private final String myFile;
+    private final ContentCache.Key myKey;
+    private volatile byte[] myBytes = null;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
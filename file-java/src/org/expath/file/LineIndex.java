@@ -0,0 +1,230 @@
+/****************************************************************************/
+/*  File:       LineIndex.java                                              */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The byte offsets of the lines of a text file, to seek straight to a line.
+ *
+ * Only the offset of one line every {@link #STRIDE} lines is kept, so the index
+ * stays small even for huge files: reaching a line means seeking to the closest
+ * indexed line before it, then skipping at most {@code STRIDE - 1} lines.
+ *
+ * Lines are separated the same way as by {@link LineReader}.  The offsets are
+ * found on the raw bytes, so an index is only valid for charsets compatible
+ * with ASCII.  An index records the size and last modification time of the
+ * file, to check it is still up to date.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class LineIndex
+{
+    private LineIndex(long size, long modified, long count, long[] offsets)
+    {
+        mySize = size;
+        myModified = modified;
+        myCount = count;
+        myOffsets = offsets;
+    }
+
+    public long getSize()
+    {
+        return mySize;
+    }
+
+    public long getModified()
+    {
+        return myModified;
+    }
+
+    public long getLineCount()
+    {
+        return myCount;
+    }
+
+    /**
+     * The offset of the closest indexed line at or before {@code line}.
+     *
+     * Lines are numbered from 0.  The line found is {@code line - line % STRIDE}.
+     */
+    public long getOffset(long line)
+    {
+        return myOffsets[(int) (line / STRIDE)];
+    }
+
+    /**
+     * Whether this index is still valid for the file {@code f}.
+     */
+    public boolean isValidFor(File f)
+    {
+        return f.length() == mySize && f.lastModified() == myModified;
+    }
+
+    /**
+     * Scan a file to build its index.
+     */
+    static LineIndex build(File f, FileChannel ch)
+            throws IOException
+    {
+        long modified = f.lastModified();
+        long size = ch.size();
+        Builder builder = new Builder();
+        boolean cr = false;
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buf = pool.acquireHeap();
+        long pos = 0;
+        try {
+            int read;
+            while ( (read = ch.read(buf, pos)) >= 0 ) {
+                byte[] bytes = buf.array();
+                for ( int i = 0; i < read; ++i, ++pos ) {
+                    byte b = bytes[i];
+                    if ( cr ) {
+                        cr = false;
+                        if ( b == '\n' ) {
+                            builder.newLine(pos + 1);
+                            continue;
+                        }
+                        // a CR alone, this byte starts a new line
+                        builder.newLine(pos);
+                    }
+                    if ( b == '\n' ) {
+                        builder.newLine(pos + 1);
+                    }
+                    else if ( b == '\r' ) {
+                        cr = true;
+                    }
+                }
+                buf.clear();
+            }
+        }
+        finally {
+            pool.release(buf);
+        }
+        if ( cr ) {
+            builder.newLine(pos);
+        }
+        // the last line counts only if it is not empty
+        long count = builder.start < pos ? builder.line + 1 : builder.line;
+        return new LineIndex(size, modified, count, Arrays.copyOf(builder.offsets, builder.indexed));
+    }
+
+    /**
+     * Load an index from a sidecar file, or return null if it is not valid for {@code f}.
+     */
+    static LineIndex load(File sidecar, File f)
+            throws IOException
+    {
+        try ( DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar))) ) {
+            if ( in.readInt() != MAGIC || in.readInt() != STRIDE ) {
+                return null;
+            }
+            long size = in.readLong();
+            long modified = in.readLong();
+            if ( size != f.length() || modified != f.lastModified() ) {
+                return null;
+            }
+            long count = in.readLong();
+            long[] offsets = new long[in.readInt()];
+            for ( int i = 0; i < offsets.length; ++i ) {
+                offsets[i] = in.readLong();
+            }
+            return new LineIndex(size, modified, count, offsets);
+        }
+    }
+
+    /**
+     * Save this index to a sidecar file.
+     */
+    void save(File sidecar)
+            throws IOException
+    {
+        try ( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sidecar))) ) {
+            out.writeInt(MAGIC);
+            out.writeInt(STRIDE);
+            out.writeLong(mySize);
+            out.writeLong(myModified);
+            out.writeLong(myCount);
+            out.writeInt(myOffsets.length);
+            for ( long o : myOffsets ) {
+                out.writeLong(o);
+            }
+        }
+    }
+
+    private static class Builder
+    {
+        public void newLine(long offset)
+        {
+            ++line;
+            start = offset;
+            if ( line % STRIDE == 0 ) {
+                if ( indexed == offsets.length ) {
+                    offsets = Arrays.copyOf(offsets, indexed * 2);
+                }
+                offsets[indexed++] = offset;
+            }
+        }
+
+        /** The line being scanned, and its offset. */
+        public long line = 0;
+        public long start = 0;
+        /** The line 0 is always at offset 0. */
+        public long[] offsets = new long[16];
+        public int indexed = 1;
+    }
+
+    /** The number of lines between two indexed lines. */
+    public static final int STRIDE = 1024;
+    /** The extension added to the name of a file, for its sidecar index. */
+    public static final String SIDECAR_EXTENSION = ".lidx";
+
+    /** "LIDX", identifies a sidecar index file. */
+    private static final int MAGIC = 0x4C494458;
+
+    private final long mySize;
+    private final long myModified;
+    private final long myCount;
+    private final long[] myOffsets;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
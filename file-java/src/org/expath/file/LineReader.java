@@ -0,0 +1,231 @@
+/****************************************************************************/
+/*  File:       LineReader.java                                             */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read the lines of a text file, one at a time.
+ *
+ * Lines are decoded only when they are asked for, so a file can be processed
+ * without being loaded in memory.  Lines are separated the same way as by
+ * {@link BufferedReader#readLine()}.  The file is closed as soon as its end has
+ * been reached, or when this reader is explicitly closed.
+ *
+ * For charsets compatible with ASCII, lines are first split on the raw bytes,
+ * and as long as they are pure ASCII, strings are built straight from them,
+ * without going through a decoder.  At the first non-ASCII byte, the rest of
+ * the file is read through a regular decoder.
+ *
+ * Get one with {@link Read#openTextLines(String)}.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class LineReader
+        implements AutoCloseable
+{
+    LineReader(String file, ReadableByteChannel in, Charset encoding)
+    {
+        myFile = file;
+        myChannel = in;
+        myEncoding = encoding;
+        myLatin1 = StandardCharsets.ISO_8859_1.equals(encoding);
+        if ( Util.isAsciiCompatible(encoding) ) {
+            myBuffer = BufferPool.getDefault().acquireHeap();
+            myBuffer.flip();
+        }
+        else {
+            myReader = new BufferedReader(Channels.newReader(in, encoding.newDecoder(), -1));
+        }
+    }
+
+    public String getFile()
+    {
+        return myFile;
+    }
+
+    /**
+     * Return the next line, or null if the end of the file has been reached.
+     */
+    public String readLine()
+            throws FileException
+    {
+        if ( myChannel == null ) {
+            return null;
+        }
+        String line;
+        try {
+            line = myReader == null ? readAscii() : myReader.readLine();
+        }
+        catch ( IOException ex ) {
+            close();
+            throw FileException.ioError("Error reading from the file: " + myFile, ex);
+        }
+        if ( line == null ) {
+            close();
+        }
+        return line;
+    }
+
+    @Override
+    public void close()
+            throws FileException
+    {
+        if ( myChannel != null ) {
+            ReadableByteChannel ch = myChannel;
+            myChannel = null;
+            // a buffer grown for a long line is simply ignored by the pool
+            BufferPool.getDefault().release(myBuffer);
+            myBuffer = null;
+            try {
+                if ( myReader != null ) {
+                    myReader.close();
+                }
+                ch.close();
+            }
+            catch ( IOException ex ) {
+                throw FileException.ioError("Error closing the file: " + myFile, ex);
+            }
+        }
+    }
+
+    private String readAscii()
+            throws IOException
+    {
+        // the previous line ended with a CR at the end of the buffer
+        if ( mySkipLF ) {
+            if ( ! myBuffer.hasRemaining() && ! fill() ) {
+                return null;
+            }
+            mySkipLF = false;
+            if ( myBuffer.get(myBuffer.position()) == '\n' ) {
+                myBuffer.get();
+            }
+        }
+        // offset of the next byte to scan, relative to the buffer position
+        int off = 0;
+        while ( true ) {
+            byte[] bytes = myBuffer.array();
+            int start = myBuffer.position();
+            int limit = myBuffer.limit();
+            for ( int i = start + off; i < limit; ++i ) {
+                byte b = bytes[i];
+                if ( b == '\n' || b == '\r' ) {
+                    String line = new String(bytes, start, i - start, StandardCharsets.ISO_8859_1);
+                    if ( b == '\r' ) {
+                        if ( i + 1 == limit ) {
+                            mySkipLF = true;
+                        }
+                        else if ( bytes[i + 1] == '\n' ) {
+                            ++i;
+                        }
+                    }
+                    myBuffer.position(i + 1);
+                    return line;
+                }
+                else if ( b < 0 && ! myLatin1 ) {
+                    switchToDecoder(bytes, start, limit);
+                    return myReader.readLine();
+                }
+            }
+            off = limit - start;
+            if ( ! fill() ) {
+                // last line, without any line separator
+                if ( ! myBuffer.hasRemaining() ) {
+                    return null;
+                }
+                String line = new String(myBuffer.array(), myBuffer.position(),
+                        myBuffer.remaining(), StandardCharsets.ISO_8859_1);
+                myBuffer.position(myBuffer.limit());
+                return line;
+            }
+        }
+    }
+
+    /**
+     * Read more bytes after the remaining ones, return false at the end of file.
+     */
+    private boolean fill()
+            throws IOException
+    {
+        if ( myBuffer.position() == 0 && myBuffer.limit() == myBuffer.capacity() ) {
+            // the current line fills the whole buffer
+            ByteBuffer bigger = ByteBuffer.allocate(myBuffer.capacity() * 2);
+            bigger.put(myBuffer);
+            bigger.flip();
+            myBuffer = bigger;
+        }
+        myBuffer.compact();
+        int read;
+        try {
+            read = myChannel.read(myBuffer);
+        }
+        finally {
+            myBuffer.flip();
+        }
+        return read > 0;
+    }
+
+    /**
+     * Decode the rest of the file, from {@code start} in the buffer, with a decoder.
+     */
+    private void switchToDecoder(byte[] bytes, int start, int limit)
+    {
+        InputStream rest = new SequenceInputStream(
+                new ByteArrayInputStream(bytes, start, limit - start),
+                Channels.newInputStream(myChannel));
+        myReader = new BufferedReader(new InputStreamReader(rest, myEncoding.newDecoder()));
+        myBuffer = null;
+    }
+
+    private final String myFile;
+    private final Charset myEncoding;
+    private final boolean myLatin1;
+    private ReadableByteChannel myChannel;
+    /** Read raw bytes, as long as they are ASCII, from the default buffer pool. */
+    private ByteBuffer myBuffer = null;
+    /** The previous line ended with CR, skip the next char if it is LF. */
+    private boolean mySkipLF = false;
+    /** Decode the file, either from the start or after the first non-ASCII byte. */
+    private BufferedReader myReader = null;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,73 @@
+/****************************************************************************/
+/*  File:       Patch.java                                                  */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+/**
+ * Some bytes to write at a given offset in a file.
+ *
+ * Patches are applied by {@link Write#writePatches(String, java.util.List)}.
+ * The bytes are not copied, they must not be changed before the patch has
+ * been applied.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class Patch
+{
+    public Patch(long offset, byte[] bytes)
+    {
+        Util.ensureNotNull(bytes, "bytes cannot be null");
+        myOffset = offset;
+        myBytes = bytes;
+    }
+
+    public long getOffset()
+    {
+        return myOffset;
+    }
+
+    public byte[] getBytes()
+    {
+        return myBytes;
+    }
+
+    /**
+     * The offset just after the last byte of this patch.
+     */
+    public long getEnd()
+    {
+        return myOffset + myBytes.length;
+    }
+
+    private final long myOffset;
+    private final byte[] myBytes;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -10,22 +10,48 @@
 
 package org.expath.file;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Facade for the `read*` functions of the EXPath File module.
  * 
+ * Binary content of at least {@link #getMapThreshold()} bytes is read through
+ * a memory-mapped view of the file instead of a stream, so it is copied only
+ * once, straight from the page cache to the resulting array.
+ * 
  * @author Florent Georges
  * @date   2015-01-07
  * @see http://expath.org/spec/file#in-out
@@ -33,6 +59,134 @@ import java.util.List;
  */
 public class Read
 {
+    public Read()
+    {
+        this(DEFAULT_MAP_THRESHOLD);
+    }
+
+    public Read(long map_threshold)
+    {
+        myMapThreshold = map_threshold;
+    }
+
+    /**
+     * The size from which binary content is read through a memory mapping.
+     */
+    public long getMapThreshold()
+    {
+        return myMapThreshold;
+    }
+
+    public void setMapThreshold(long threshold)
+    {
+        myMapThreshold = threshold;
+    }
+
+    /**
+     * The pool used to split the lines of large files in parallel, if any.
+     * 
+     * If set, {@link #readTextLines(String, Charset)} uses it for files of at
+     * least {@link #getParallelThreshold()} bytes.
+     */
+    public ForkJoinPool getParallelPool()
+    {
+        return myPool;
+    }
+
+    public void setParallelPool(ForkJoinPool pool)
+    {
+        myPool = pool;
+    }
+
+    public long getParallelThreshold()
+    {
+        return myParallelThreshold;
+    }
+
+    public void setParallelThreshold(long threshold)
+    {
+        myParallelThreshold = threshold;
+    }
+
+    /**
+     * Whether line indexes are saved to, and loaded from, sidecar files.
+     * 
+     * The sidecar file of a file is in the same directory, with the extension
+     * {@link LineIndex#SIDECAR_EXTENSION} added to its name.
+     */
+    public boolean isLineIndexSidecar()
+    {
+        return myIndexSidecar;
+    }
+
+    public void setLineIndexSidecar(boolean sidecar)
+    {
+        myIndexSidecar = sidecar;
+    }
+
+    /**
+     * The cache used for whole-file reads of binary and text content, if any.
+     */
+    public ContentCache getContentCache()
+    {
+        return myCache;
+    }
+
+    public void setContentCache(ContentCache cache)
+    {
+        myCache = cache;
+    }
+
+    /**
+     * The maximum number of files read at the same time by a batch read.
+     */
+    public int getBatchParallelism()
+    {
+        return myBatchParallelism;
+    }
+
+    public void setBatchParallelism(int parallelism)
+    {
+        if ( parallelism < 1 ) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        myBatchParallelism = parallelism;
+    }
+
+    /**
+     * The executor running batch reads, in addition to the calling thread.
+     * 
+     * If null (the default), a pool of daemon threads shared by all instances
+     * is used.
+     */
+    public ExecutorService getBatchExecutor()
+    {
+        return myBatchExecutor;
+    }
+
+    public void setBatchExecutor(ExecutorService executor)
+    {
+        myBatchExecutor = executor;
+    }
+
+    /**
+     * Whether text content is decompressed while being read.
+     * 
+     * It applies to {@code readText*} and {@code openTextLines}, and defaults
+     * to {@link Compression#NONE}.  Compressed content is decompressed as it
+     * is decoded, it is never written to disk uncompressed.  Binary reads
+     * always return the raw content of the file.
+     */
+    public Compression getCompression()
+    {
+        return myCompression;
+    }
+
+    public void setCompression(Compression compression)
+    {
+        myCompression = compression;
+    }
+
     // file:read-binary($file as xs:string) as xs:base64Binary
     // file:read-binary($file as xs:string,
     //                  $offset as xs:integer) as xs:base64Binary
@@ -46,8 +200,32 @@ public class Read
     public byte[] readBinary(String file)
             throws FileException
     {
+        ContentCache cache = myCache;
+        if ( cache == null ) {
+            return doReadBinary(file);
+        }
+        ContentCache.Key key = ContentCache.key(file, BINARY_VARIANT);
+        byte[] bytes = (byte[]) cache.get(key);
+        if ( bytes == null ) {
+            bytes = doReadBinary(file);
+            // do not cache it if the file changed while being read
+            if ( ! key.equals(ContentCache.key(file, BINARY_VARIANT))
+                    || ! cache.put(key, bytes, bytes.length) ) {
+                return bytes;
+            }
+        }
+        // the cached array must not be modified by the caller
+        return bytes.clone();
+    }
+
+    private byte[] doReadBinary(String file)
+            throws FileException
+    {
+        File f = Util.openFile(file);
+        if ( f.length() >= myMapThreshold ) {
+            return readBinary(file, 0);
+        }
         try {
-            File f = Util.openFile(file);
             Path p = f.toPath();
             return Files.readAllBytes(p);
         }
@@ -62,16 +240,8 @@ public class Read
         if ( offset < 0 ) {
             throw FileException.outOfRange("Offset is negative: " + offset);
         }
-        InputStream in = Util.openInputStream(file);
-        try {
-            in.skip(offset);
-            return Util.readByteArray(in);
-        }
-        catch ( IOException ex ) {
-            throw FileException.ioError("Error reading from the file: " + file, ex);
-        }
-        finally {
-            Util.close(in);
+        try ( BinaryReader in = openBinary(file) ) {
+            return in.read(offset);
         }
     }
 
@@ -84,16 +254,116 @@ public class Read
         if ( length < 0 ) {
             throw FileException.outOfRange("Length is negative: " + length);
         }
-        InputStream in = Util.openInputStream(file);
-        try {
-            in.skip(offset);
-            return Util.readByteArray(in, length);
+        try ( BinaryReader in = openBinary(file) ) {
+            return in.read(offset, length);
+        }
+    }
+
+    /**
+     * Return the content of a file, to be read only when it is actually needed.
+     * 
+     * The file must exist when this method is called.  Reading it later raises
+     * an error if it has changed in between.
+     */
+    public LazyBinary readBinaryLazy(String file)
+            throws FileException
+    {
+        return new LazyBinary(this, file);
+    }
+
+    /**
+     * Open a file to read several ranges of bytes from it.
+     * 
+     * The returned reader keeps the file open until it is closed.
+     */
+    public BinaryReader openBinary(String file)
+            throws FileException
+    {
+        FileChannel ch = Util.openReadChannel(file);
+        return new BinaryReader(file, ch, myMapThreshold);
+    }
+
+    /**
+     * Map a region of a file in memory, read-only.
+     * 
+     * The returned buffer is a view on the file content, nothing is copied to
+     * the heap.  The mapping stays valid until the buffer is garbage collected,
+     * even though the underlying channel is already closed.
+     */
+    public ByteBuffer mapBinary(String file)
+            throws FileException
+    {
+        try ( BinaryReader in = openBinary(file) ) {
+            return in.map(0, in.size());
+        }
+    }
+
+    public ByteBuffer mapBinary(String file, long offset, long length)
+            throws FileException
+    {
+        try ( BinaryReader in = openBinary(file) ) {
+            return in.map(offset, length);
+        }
+    }
+
+    /**
+     * Return the content of a file, encoded in base64.
+     * 
+     * This is the same as encoding the result of {@link #readBinary(String)},
+     * but the content is never held in memory: it is encoded as it is read,
+     * straight into a buffer of the exact size of the result.
+     */
+    public String readBinaryBase64(String file)
+            throws FileException
+    {
+        long size = Util.openFile(file).length();
+        long length = (size + 2) / 3 * 4;
+        if ( length > MAX_ARRAY_SIZE ) {
+            throw FileException.ioError("Content too large to fit in a string (" + length + "): " + file);
+        }
+        StringBuilder buf = new StringBuilder((int) length);
+        readBinaryBase64(file, buf);
+        return buf.toString();
+    }
+
+    /**
+     * Encode the content of a file in base64, to {@code out}.
+     * 
+     * The file is read and encoded in chunks, so neither its content nor its
+     * encoding is ever held in memory as a whole.
+     */
+    public void readBinaryBase64(String file, Appendable out)
+            throws FileException
+    {
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buf = pool.acquireHeap();
+        // chunks must be a multiple of 3 bytes, so only the last one is padded
+        int chunk = buf.capacity() / 3 * 3;
+        if ( chunk == 0 ) {
+            buf = ByteBuffer.allocate(CHUNK_SIZE);
+            chunk = CHUNK_SIZE / 3 * 3;
+        }
+        char[] chars = new char[chunk / 3 * 4];
+        try ( FileChannel ch = Util.openReadChannel(file) ) {
+            long pos = 0;
+            boolean eof = false;
+            while ( ! eof ) {
+                buf.clear();
+                buf.limit(chunk);
+                int read = 0;
+                while ( buf.hasRemaining() && (read = ch.read(buf, pos)) >= 0 ) {
+                    pos += read;
+                }
+                eof = read < 0;
+                int length = Util.encodeBase64(buf.array(), buf.position(), chars);
+                out.append(CharBuffer.wrap(chars, 0, length));
+            }
         }
         catch ( IOException ex ) {
-            throw FileException.ioError("Error reading from the file: " + file, ex);
+            throw FileException.ioError("Error encoding the file in base64: " + file, ex);
         }
         finally {
-            Util.close(in);
+            pool.release(buf);
         }
     }
 
@@ -120,16 +390,314 @@ public class Read
     public String readText(String file, Charset encoding)
             throws FileException
     {
-        byte[] bytes = readBinary(file);
-        CharsetDecoder decoder = encoding.newDecoder();
-        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        ContentCache cache = myCache;
+        if ( cache == null ) {
+            return doReadText(file, encoding);
+        }
+        Compression compression = myCompression;
+        String variant = TEXT_VARIANT + encoding.name();
+        if ( compression != Compression.NONE ) {
+            variant += ":" + compression;
+        }
+        ContentCache.Key key = ContentCache.key(file, variant);
+        String text = (String) cache.get(key);
+        if ( text == null ) {
+            text = doReadText(file, encoding);
+            // do not cache it if the file changed while being read
+            if ( key.equals(ContentCache.key(file, variant)) ) {
+                cache.put(key, text, 2L * text.length());
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Read the text of several files, returned in the same order.
+     * 
+     * Up to {@link #getBatchParallelism()} files are read at the same time.
+     * This fails fast: at the first error, no more files are read, and that
+     * error is thrown once the reads in progress are done.
+     */
+    public List<String> readTexts(List<String> files, String encoding)
+            throws FileException
+    {
+        Charset cs = Util.getCharset(encoding);
+        return readTexts(files, cs);
+    }
+
+    public List<String> readTexts(List<String> files, Charset encoding)
+            throws FileException
+    {
+        List<BatchResult<String>> results = readTexts(files, encoding, true);
+        List<String> texts = new ArrayList<>(results.size());
+        for ( BatchResult<String> r : results ) {
+            texts.add(r.getValue());
+        }
+        return texts;
+    }
+
+    /**
+     * Read the text of several files, returning the error of each file that failed.
+     * 
+     * Like {@link #readTexts(List, Charset)}, but all files are read, whatever
+     * errors occur.
+     */
+    public List<BatchResult<String>> tryReadTexts(List<String> files, String encoding)
+            throws FileException
+    {
+        Charset cs = Util.getCharset(encoding);
+        return tryReadTexts(files, cs);
+    }
+
+    public List<BatchResult<String>> tryReadTexts(List<String> files, Charset encoding)
+            throws FileException
+    {
+        return readTexts(files, encoding, false);
+    }
+
+    private List<BatchResult<String>> readTexts(final List<String> files, final Charset encoding, final boolean fail_fast)
+            throws FileException
+    {
+        final int count = files.size();
+        final AtomicReferenceArray<BatchResult<String>> results = new AtomicReferenceArray<>(count);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<FileException> failure = new AtomicReference<>();
+        // each worker reads files in turn, until no file is left
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int i;
+                while ( failure.get() == null && (i = next.getAndIncrement()) < count ) {
+                    String file = files.get(i);
+                    try {
+                        results.set(i, BatchResult.success(file, readText(file, encoding)));
+                    }
+                    catch ( FileException ex ) {
+                        results.set(i, BatchResult.<String>failure(file, ex));
+                        if ( fail_fast ) {
+                            failure.compareAndSet(null, ex);
+                        }
+                    }
+                }
+            }
+        };
+        // the calling thread is one of the workers
+        int helpers = Math.min(myBatchParallelism, count) - 1;
+        final Helpers running = new Helpers();
+        ExecutorService executor = myBatchExecutor;
+        if ( helpers > 0 && executor == null ) {
+            executor = DefaultBatchExecutor.INSTANCE;
+        }
+        for ( int h = 0; h < helpers; ++h ) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if ( ! running.enter() ) {
+                            return;
+                        }
+                        try {
+                            worker.run();
+                        }
+                        finally {
+                            running.leave();
+                        }
+                    }
+                });
+            }
+            catch ( RejectedExecutionException ex ) {
+                // one less helper, the other workers will do its part
+            }
+        }
+        worker.run();
+        // all files have been taken, only wait for the helpers reading one
         try {
-            CharBuffer chars = decoder.decode(buf);
-            return chars.toString();
+            running.close();
+        }
+        catch ( InterruptedException ex ) {
+            failure.compareAndSet(null, FileException.ioError("Interrupted while reading files", ex));
+            Thread.currentThread().interrupt();
+            throw failure.get();
+        }
+        if ( failure.get() != null ) {
+            throw failure.get();
+        }
+        List<BatchResult<String>> list = new ArrayList<>(count);
+        for ( int i = 0; i < count; ++i ) {
+            list.add(results.get(i));
+        }
+        return list;
+    }
+
+    /**
+     * The helpers of a batch read that have started.
+     * 
+     * Once the calling thread has no file left to take, it closes the batch:
+     * the helpers that have not started yet (e.g. because the executor is
+     * busy) do not start at all, and it only waits for the running ones.
+     */
+    private static class Helpers
+    {
+        /**
+         * Claim a slot for a helper, return false if the batch is closed.
+         */
+        public synchronized boolean enter()
+        {
+            if ( closed ) {
+                return false;
+            }
+            ++running;
+            return true;
+        }
+
+        public synchronized void leave()
+        {
+            --running;
+            notifyAll();
+        }
+
+        /**
+         * Close the batch, and wait for the running helpers.
+         */
+        public synchronized void close()
+                throws InterruptedException
+        {
+            closed = true;
+            while ( running > 0 ) {
+                wait();
+            }
+        }
+
+        private boolean closed = false;
+        private int running = 0;
+    }
+
+    /**
+     * The pool used by batch reads when no executor is set, created when first used.
+     */
+    private static class DefaultBatchExecutor
+    {
+        public static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "expath-file-batch");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private String doReadText(String file, Charset encoding)
+            throws FileException
+    {
+        try ( FileChannel ch = Util.openReadChannel(file) ) {
+            if ( isGzipped(ch, myCompression) ) {
+                try ( ReadableByteChannel in = gunzip(ch) ) {
+                    return decodeText(in, Math.max(ch.size(), gunzippedSize(ch)), encoding);
+                }
+            }
+            return decodeText(ch, ch.size(), encoding);
         }
         catch ( CharacterCodingException ex ) {
             throw FileException.ioError("Encoding error (" + encoding + ") reading: " + file, ex);
         }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error reading from the file: " + file, ex);
+        }
+    }
+
+    /**
+     * Decode the whole content of a channel, in chunks of the size of the
+     * buffers of the default {@link BufferPool} (or of at least 64 bytes).
+     * 
+     * The output buffer is sized upfront from the size of the content and the
+     * average number of chars per byte of the charset, so it is (most of the
+     * time) never reallocated.  The final string is its only copy.
+     * 
+     * For charsets compatible with ASCII, bytes are copied as is as long as
+     * they are ASCII, and the decoder is only used from the first non-ASCII
+     * byte on.
+     */
+    private String decodeText(ReadableByteChannel ch, long size, Charset encoding)
+            throws IOException
+    {
+        CharsetDecoder decoder = Util.getDecoder(encoding);
+        long estimate = (long) (size * (double) decoder.averageCharsPerByte()) + 1;
+        CharBuffer out = CharBuffer.allocate((int) Math.min(estimate, MAX_ARRAY_SIZE));
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer in = pool.acquireHeap();
+        if ( in.capacity() < MIN_DECODE_BUFFER_SIZE ) {
+            // leave room for the longest sequence of bytes for one char, or the decoder never progresses
+            in = ByteBuffer.allocate(MIN_DECODE_BUFFER_SIZE);
+        }
+        boolean latin1 = StandardCharsets.ISO_8859_1.equals(encoding);
+        boolean ascii = Util.isAsciiCompatible(encoding);
+        try {
+            boolean eof = false;
+            while ( ! eof ) {
+                eof = ch.read(in) < 0;
+                in.flip();
+                if ( ascii ) {
+                    while ( out.remaining() < in.remaining() ) {
+                        out = grow(out);
+                    }
+                    ascii = widen(in, out, latin1);
+                }
+                if ( ! ascii ) {
+                    CoderResult res;
+                    while ( (res = decoder.decode(in, out, eof)).isOverflow() ) {
+                        out = grow(out);
+                    }
+                    if ( res.isError() ) {
+                        res.throwException();
+                    }
+                }
+                in.compact();
+            }
+        }
+        finally {
+            pool.release(in);
+        }
+        if ( ! ascii ) {
+            while ( decoder.flush(out).isOverflow() ) {
+                out = grow(out);
+            }
+        }
+        return new String(out.array(), 0, out.position());
+    }
+
+    /**
+     * Copy bytes to chars one to one, as long as they are ASCII.
+     * 
+     * Return false if it stopped on a non-ASCII byte, which is then left in
+     * the input buffer.  If {@code latin1} is true, all bytes are copied.
+     */
+    private boolean widen(ByteBuffer in, CharBuffer out, boolean latin1)
+    {
+        byte[] bytes = in.array();
+        char[] chars = out.array();
+        int i = in.position();
+        int o = out.position();
+        int limit = in.limit();
+        while ( i < limit && (latin1 || bytes[i] >= 0) ) {
+            chars[o++] = (char) (bytes[i++] & 0xFF);
+        }
+        in.position(i);
+        out.position(o);
+        return i == limit;
+    }
+
+    private CharBuffer grow(CharBuffer buf)
+            throws IOException
+    {
+        if ( buf.capacity() == MAX_ARRAY_SIZE ) {
+            throw new IOException("Text too large to fit in a string");
+        }
+        long size = Math.max(buf.capacity() * 2L, CHUNK_SIZE);
+        CharBuffer bigger = CharBuffer.allocate((int) Math.min(size, MAX_ARRAY_SIZE));
+        buf.flip();
+        bigger.put(buf);
+        return bigger;
     }
 
     // file:read-text-lines($file as xs:string) as xs:string*
@@ -155,15 +723,413 @@ public class Read
     public List<String> readTextLines(String file, Charset encoding)
             throws FileException
     {
+        ForkJoinPool pool = myPool;
+        if ( pool != null && Util.isAsciiCompatible(encoding)
+                && Util.openFile(file).length() >= myParallelThreshold ) {
+            return readTextLines(file, encoding, pool);
+        }
+        try ( LineReader in = openTextLines(file, encoding) ) {
+            return readLines(in);
+        }
+    }
+
+    /**
+     * Read {@code length} lines of a text file, starting at line {@code offset}.
+     * 
+     * Lines are numbered from 0.  For charsets compatible with ASCII, a
+     * {@link LineIndex} of the file is used to seek straight to the range of
+     * lines.  Indexes are cached in memory and, if enabled by
+     * {@link #setLineIndexSidecar(boolean)}, saved next to the file.  For other
+     * charsets, the lines before the range are read and skipped.
+     */
+    public List<String> readTextLines(String file, String encoding, long offset, long length)
+            throws FileException
+    {
+        Charset cs = Util.getCharset(encoding);
+        return readTextLines(file, cs, offset, length);
+    }
+
+    public List<String> readTextLines(String file, Charset encoding, long offset, long length)
+            throws FileException
+    {
+        if ( offset < 0 ) {
+            throw FileException.outOfRange("Offset is negative: " + offset);
+        }
+        if ( length < 0 ) {
+            throw FileException.outOfRange("Length is negative: " + length);
+        }
+        FileChannel ch = Util.openReadChannel(file);
+        ReadableByteChannel in = ch;
+        long skip = offset;
+        boolean gzipped;
         try {
-            File f = Util.openFile(file);
-            Path p = f.toPath();
-            return Files.readAllLines(p, encoding);
+            gzipped = isGzipped(ch, myCompression);
+            if ( gzipped ) {
+                in = gunzip(ch);
+            }
+        }
+        catch ( IOException ex ) {
+            Util.close(ch);
+            throw FileException.ioError("Error reading from the file: " + file, ex);
+        }
+        // the index is on the raw bytes, so not usable for compressed content
+        if ( Util.isAsciiCompatible(encoding) && ! gzipped ) {
+            LineIndex index;
+            try {
+                index = getLineIndex(file, ch);
+            }
+            catch ( FileException ex ) {
+                Util.close(ch);
+                throw ex;
+            }
+            if ( offset >= index.getLineCount() ) {
+                Util.close(ch);
+                return new ArrayList<>();
+            }
+            try {
+                ch.position(index.getOffset(offset));
+            }
+            catch ( IOException ex ) {
+                Util.close(ch);
+                throw FileException.ioError("Error seeking in the file: " + file, ex);
+            }
+            skip = offset % LineIndex.STRIDE;
+        }
+        List<String> lines = new ArrayList<>();
+        try ( LineReader reader = new LineReader(file, in, encoding) ) {
+            for ( long i = 0; i < skip && reader.readLine() != null; ++i ) {
+                // skip the lines before the range
+            }
+            String line;
+            while ( lines.size() < length && (line = reader.readLine()) != null ) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Return the line index of a text file, building it if needed.
+     */
+    public LineIndex getLineIndex(String file)
+            throws FileException
+    {
+        FileChannel ch = Util.openReadChannel(file);
+        try {
+            return getLineIndex(file, ch);
+        }
+        finally {
+            Util.close(ch);
+        }
+    }
+
+    private LineIndex getLineIndex(String file, FileChannel ch)
+            throws FileException
+    {
+        File f = new File(file).getAbsoluteFile();
+        String key = f.getPath();
+        LineIndex index;
+        synchronized ( myIndexes ) {
+            index = myIndexes.get(key);
+        }
+        if ( index != null && index.isValidFor(f) ) {
+            return index;
+        }
+        File sidecar = new File(f.getPath() + LineIndex.SIDECAR_EXTENSION);
+        index = null;
+        if ( myIndexSidecar && sidecar.isFile() ) {
+            try {
+                index = LineIndex.load(sidecar, f);
+            }
+            catch ( IOException ex ) {
+                // a corrupted sidecar file, just rebuild the index
+            }
+        }
+        if ( index == null ) {
+            try {
+                index = LineIndex.build(f, ch);
+            }
+            catch ( IOException ex ) {
+                throw FileException.ioError("Error indexing the lines of the file: " + file, ex);
+            }
+            if ( myIndexSidecar ) {
+                try {
+                    index.save(sidecar);
+                }
+                catch ( IOException ex ) {
+                    // the index is still usable from memory, e.g. in a read-only dir
+                }
+            }
+        }
+        synchronized ( myIndexes ) {
+            myIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Read the lines of a text file, splitting the work on a pool of threads.
+     * 
+     * The file is cut in byte ranges, each one ending right after a line feed,
+     * which are decoded and split in parallel.  The lines are returned in the
+     * order of the file.  This requires that a line feed byte is always a line
+     * feed char, so for charsets not compatible with ASCII (e.g. UTF-16), the
+     * file is read sequentially.  So are compressed files.
+     */
+    public List<String> readTextLines(String file, Charset encoding, ForkJoinPool pool)
+            throws FileException
+    {
+        if ( ! Util.isAsciiCompatible(encoding) ) {
+            try ( LineReader in = openTextLines(file, encoding) ) {
+                return readLines(in);
+            }
+        }
+        try ( FileChannel ch = Util.openReadChannel(file) ) {
+            if ( isGzipped(ch, myCompression) ) {
+                try ( LineReader in = new LineReader(file, gunzip(ch), encoding) ) {
+                    return readLines(in);
+                }
+            }
+            long size = ch.size();
+            long count = Math.max(1, Math.min(size / MIN_PARALLEL_CHUNK, pool.getParallelism() * 4L));
+            count = Math.max(count, size / MAX_ARRAY_SIZE + 1);
+            List<ForkJoinTask<List<String>>> tasks = new ArrayList<>();
+            long start = 0;
+            for ( long i = 1; i <= count && start < size; ++i ) {
+                long end = i == count ? size : nextLineStart(ch, Math.max(start, i * size / count));
+                if ( end - start > MAX_ARRAY_SIZE ) {
+                    throw FileException.ioError("Line too large to fit in a string: " + file);
+                }
+                LinesChunk chunk = new LinesChunk(file, ch, encoding, start, (int) (end - start));
+                tasks.add(pool.submit(ForkJoinTask.adapt(chunk)));
+                start = end;
+            }
+            List<String> lines = new ArrayList<>();
+            for ( ForkJoinTask<List<String>> t : tasks ) {
+                lines.addAll(t.get());
+            }
+            return lines;
+        }
+        catch ( ExecutionException ex ) {
+            if ( ex.getCause() instanceof FileException ) {
+                throw (FileException) ex.getCause();
+            }
+            throw FileException.ioError("Error reading from the file: " + file, ex.getCause());
+        }
+        catch ( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw FileException.ioError("Interrupted while reading from the file: " + file, ex);
         }
         catch ( IOException ex ) {
             throw FileException.ioError("Error reading from the file: " + file, ex);
         }
     }
+
+    private static List<String> readLines(LineReader in)
+            throws FileException
+    {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ( (line = in.readLine()) != null ) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * The position right after the first line feed at or after {@code pos}.
+     */
+    private long nextLineStart(FileChannel ch, long pos)
+            throws IOException
+    {
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buf = pool.acquireHeap();
+        try {
+            while ( true ) {
+                buf.clear();
+                int read = ch.read(buf, pos);
+                if ( read < 0 ) {
+                    return ch.size();
+                }
+                byte[] bytes = buf.array();
+                for ( int i = 0; i < read; ++i ) {
+                    if ( bytes[i] == '\n' ) {
+                        return pos + i + 1;
+                    }
+                }
+                pos += read;
+            }
+        }
+        finally {
+            pool.release(buf);
+        }
+    }
+
+    /**
+     * Read and split the lines of a range of a file, ending right after a line feed.
+     */
+    private static class LinesChunk
+            implements Callable<List<String>>
+    {
+        public LinesChunk(String file, FileChannel ch, Charset encoding, long start, int length)
+        {
+            myFile = file;
+            myChannel = ch;
+            myEncoding = encoding;
+            myStart = start;
+            myLength = length;
+        }
+
+        @Override
+        public List<String> call()
+                throws FileException
+        {
+            BinaryReader range = new BinaryReader(myFile, myChannel, Long.MAX_VALUE);
+            byte[] bytes = range.read(myStart, myLength);
+            ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(bytes));
+            try ( LineReader reader = new LineReader(myFile, in, myEncoding) ) {
+                return readLines(reader);
+            }
+        }
+
+        private final String myFile;
+        private final FileChannel myChannel;
+        private final Charset myEncoding;
+        private final long myStart;
+        private final int myLength;
+    }
+
+    /**
+     * Open a text file to read its lines one at a time.
+     * 
+     * This is the streaming counterpart of {@link #readTextLines(String)}: the
+     * lines are decoded only when asked for.
+     */
+    public LineReader openTextLines(String file)
+            throws FileException
+    {
+        return openTextLines(file, StandardCharsets.UTF_8);
+    }
+
+    public LineReader openTextLines(String file, String encoding)
+            throws FileException
+    {
+        Charset cs = Util.getCharset(encoding);
+        return openTextLines(file, cs);
+    }
+
+    public LineReader openTextLines(String file, Charset encoding)
+            throws FileException
+    {
+        FileChannel ch = Util.openReadChannel(file);
+        try {
+            ReadableByteChannel in = isGzipped(ch, myCompression) ? gunzip(ch) : ch;
+            return new LineReader(file, in, encoding);
+        }
+        catch ( IOException ex ) {
+            Util.close(ch);
+            throw FileException.ioError("Error reading from the file: " + file, ex);
+        }
+    }
+
+    /**
+     * Whether the content of a file must be decompressed.
+     */
+    private static boolean isGzipped(FileChannel ch, Compression compression)
+            throws IOException
+    {
+        switch ( compression ) {
+            case GZIP:
+                return true;
+            case DETECT:
+                ByteBuffer magic = ByteBuffer.allocate(GZIP_MAGIC.length);
+                while ( magic.hasRemaining() && ch.read(magic, magic.position()) >= 0 ) {
+                    // read the first bytes, if any
+                }
+                return ! magic.hasRemaining() && Arrays.equals(magic.array(), GZIP_MAGIC);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A channel on the decompressed content of a gzip file.
+     * 
+     * Closing it closes {@code ch} as well.
+     */
+    private static ReadableByteChannel gunzip(FileChannel ch)
+            throws IOException
+    {
+        ch.position(0);
+        InputStream in = new GZIPInputStream(Channels.newInputStream(ch), CHUNK_SIZE);
+        return Channels.newChannel(in);
+    }
+
+    /**
+     * The uncompressed size of a gzip file, as recorded in its trailer.
+     * 
+     * The trailer only records the size modulo 2^32, and only of the last
+     * member, so this is only a hint.  It is not trusted either (the file can
+     * be truncated, corrupted, or not be a gzip file at all), so the hint is
+     * capped to {@link #MAX_GZIP_RATIO} times the compressed size, and to
+     * {@link #MAX_GZIP_HINT}.  The output buffer grows past it if needed.
+     */
+    private static long gunzippedSize(FileChannel ch)
+            throws IOException
+    {
+        long size = ch.size();
+        if ( size < 4 ) {
+            return 0;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        while ( trailer.hasRemaining() && ch.read(trailer, size - 4 + trailer.position()) >= 0 ) {
+            // read the last 4 bytes
+        }
+        long isize = trailer.getInt(0) & 0xFFFFFFFFL;
+        return Math.min(isize, Math.min(size * MAX_GZIP_RATIO, MAX_GZIP_HINT));
+    }
+
+    /** The default size from which binary content is memory-mapped: 16 MiB. */
+    public static final long DEFAULT_MAP_THRESHOLD = 16L * 1024 * 1024;
+    /** The default size from which lines are split in parallel: 64 MiB. */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 64L * 1024 * 1024;
+    /** The default maximum number of files read at the same time by a batch read. */
+    public static final int DEFAULT_BATCH_PARALLELISM = 8;
+    /** The maximum ratio between the uncompressed and compressed sizes trusted from a gzip trailer. */
+    private static final long MAX_GZIP_RATIO = 16;
+    /** The maximum uncompressed size trusted from a gzip trailer: 64 MiB. */
+    private static final long MAX_GZIP_HINT = 64L * 1024 * 1024;
+    /** The minimum size of a range of bytes split in parallel. */
+    private static final long MIN_PARALLEL_CHUNK = 1024 * 1024;
+    /** The maximum number of line indexes kept in memory. */
+    private static final int MAX_LINE_INDEXES = 64;
+    /** The variants of the content of a file, in the content cache. */
+    private static final String BINARY_VARIANT = "binary";
+    private static final String TEXT_VARIANT   = "text:";
+    /** The first two bytes of any gzip file. */
+    private static final byte[] GZIP_MAGIC = { (byte) 0x1F, (byte) 0x8B };
+    /** The size of the chunks text is decoded by. */
+    private static final int CHUNK_SIZE = 64 * 1024;
+    /** The minimum size of the buffer text is decoded from, if the pool ones are smaller. */
+    private static final int MIN_DECODE_BUFFER_SIZE = 64;
+    /** Some VMs reserve header words in an array, stay on the safe side. */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private volatile long myMapThreshold;
+    private volatile ContentCache myCache = null;
+    private volatile ForkJoinPool myPool = null;
+    private volatile boolean myIndexSidecar = false;
+    private volatile Compression myCompression = Compression.NONE;
+    private volatile int myBatchParallelism = DEFAULT_BATCH_PARALLELISM;
+    private volatile ExecutorService myBatchExecutor = null;
+    /** The most recently used line indexes, by absolute path. */
+    private final Map<String, LineIndex> myIndexes = new LinkedHashMap<String, LineIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LineIndex> eldest) {
+            return size() > MAX_LINE_INDEXES;
+        }
+    };
+    private volatile long myParallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
 }
 
 
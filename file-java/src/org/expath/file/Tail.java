@@ -0,0 +1,287 @@
+/****************************************************************************/
+/*  File:       Tail.java                                                   */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Follow files as they grow, like {@code tail -f}.
+ *
+ * A cursor is kept for each file, so each call returns only the content
+ * appended since the previous call on the same file (the first call returns
+ * the whole file).  The file stays open between calls, and is read with
+ * positional reads.
+ *
+ * If the file has been truncated, it is read again from its start.  If the
+ * file has been replaced by another one (e.g. a log file rotated), which is
+ * detected by comparing the file keys, the rest of the old file is returned
+ * first, then the new file is read from its start.  The file key is not
+ * provided by all file systems, in which case only truncations are detected.
+ *
+ * An instance can be shared between threads.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class Tail
+        implements AutoCloseable
+{
+    /**
+     * Return the bytes appended to the file since the last call.
+     */
+    public byte[] readBinary(String file)
+            throws FileException
+    {
+        Cursor cursor = cursor(file);
+        List<byte[]> chunks;
+        synchronized ( cursor ) {
+            chunks = cursor.advance(false);
+        }
+        if ( chunks.size() == 1 ) {
+            return chunks.get(0);
+        }
+        byte[] old = chunks.get(0);
+        byte[] fresh = chunks.get(1);
+        byte[] bytes = new byte[old.length + fresh.length];
+        System.arraycopy(old, 0, bytes, 0, old.length);
+        System.arraycopy(fresh, 0, bytes, old.length, fresh.length);
+        return bytes;
+    }
+
+    public List<String> readTextLines(String file)
+            throws FileException
+    {
+        return readTextLines(file, "UTF-8");
+    }
+
+    public List<String> readTextLines(String file, String encoding)
+            throws FileException
+    {
+        Charset cs = Util.getCharset(encoding);
+        return readTextLines(file, cs);
+    }
+
+    /**
+     * Return the complete lines appended to the file since the last call.
+     *
+     * A line is complete once its line separator has been written.  The last
+     * line, if it has no separator yet, is returned by a later call, when it
+     * is complete.  The line separators are found on the raw bytes, so only
+     * charsets compatible with ASCII are supported.
+     */
+    public List<String> readTextLines(String file, Charset encoding)
+            throws FileException
+    {
+        if ( ! Util.isAsciiCompatible(encoding) ) {
+            throw FileException.unknownEncoding("Following lines is not supported for the encoding: " + encoding);
+        }
+        Cursor cursor = cursor(file);
+        List<byte[]> chunks;
+        synchronized ( cursor ) {
+            chunks = cursor.advance(true);
+        }
+        List<String> lines = new ArrayList<>();
+        for ( byte[] chunk : chunks ) {
+            LineReader in = new LineReader(file, Channels.newChannel(new ByteArrayInputStream(chunk)), encoding);
+            String line;
+            while ( (line = in.readLine()) != null ) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Forget the cursor of a file, so the next call reads it from its start.
+     */
+    public void reset(String file)
+            throws FileException
+    {
+        Cursor cursor;
+        synchronized ( myCursors ) {
+            cursor = myCursors.remove(key(file));
+        }
+        if ( cursor != null ) {
+            synchronized ( cursor ) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Forget all the cursors, and close their files.
+     */
+    @Override
+    public void close()
+            throws FileException
+    {
+        List<Cursor> cursors;
+        synchronized ( myCursors ) {
+            cursors = new ArrayList<>(myCursors.values());
+            myCursors.clear();
+        }
+        for ( Cursor c : cursors ) {
+            synchronized ( c ) {
+                c.close();
+            }
+        }
+    }
+
+    private Cursor cursor(String file)
+            throws FileException
+    {
+        String key = key(file);
+        synchronized ( myCursors ) {
+            Cursor cursor = myCursors.get(key);
+            if ( cursor == null ) {
+                cursor = new Cursor(file);
+                myCursors.put(key, cursor);
+            }
+            return cursor;
+        }
+    }
+
+    private static String key(String file)
+            throws FileException
+    {
+        return Util.openFile(file).getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    /**
+     * The state of one followed file.  All methods must be called while
+     * holding the lock on the cursor.
+     */
+    private static class Cursor
+    {
+        public Cursor(String file)
+        {
+            myFile = file;
+        }
+
+        /**
+         * Return the new content, as one or two chunks (the rest of the old
+         * file, if it has been rotated, then the new content of the file).
+         */
+        public List<byte[]> advance(boolean lines)
+                throws FileException
+        {
+            List<byte[]> chunks = new ArrayList<>(2);
+            Object id = fileKey();
+            if ( myReader != null && id != null && ! id.equals(myId) ) {
+                // rotated, the old file is complete, including its last line
+                chunks.add(myReader.read(myPosition, myReader.size() - myPosition));
+                close();
+            }
+            if ( myReader == null ) {
+                myReader = new BinaryReader(myFile, Util.openReadChannel(myFile), Long.MAX_VALUE);
+                myId = id;
+                myPosition = 0;
+            }
+            long size = myReader.size();
+            if ( size < myPosition ) {
+                // truncated
+                myPosition = 0;
+            }
+            byte[] fresh = myReader.read(myPosition, size - myPosition);
+            int end = lines ? completeLines(fresh) : fresh.length;
+            if ( end < fresh.length ) {
+                byte[] complete = new byte[end];
+                System.arraycopy(fresh, 0, complete, 0, end);
+                fresh = complete;
+            }
+            myPosition += end;
+            chunks.add(fresh);
+            return chunks;
+        }
+
+        public void close()
+                throws FileException
+        {
+            if ( myReader != null ) {
+                BinaryReader reader = myReader;
+                myReader = null;
+                reader.close();
+            }
+        }
+
+        private Object fileKey()
+                throws FileException
+        {
+            Path path = Util.openFile(myFile).toPath();
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            }
+            catch ( IOException ex ) {
+                throw FileException.ioError("Error reading the attributes of the file: " + myFile, ex);
+            }
+        }
+
+        /**
+         * The length of the complete lines at the start of {@code bytes}.
+         *
+         * A CR as the very last byte does not end a line yet, as it could be
+         * the first half of a CRLF.
+         */
+        private static int completeLines(byte[] bytes)
+        {
+            for ( int i = bytes.length - 1; i >= 0; --i ) {
+                if ( bytes[i] == '\n' ) {
+                    return i + 1;
+                }
+                if ( bytes[i] == '\r' && i + 1 < bytes.length ) {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+
+        private final String myFile;
+        private BinaryReader myReader = null;
+        /** The file key of the open file, if the file system provides one. */
+        private Object myId = null;
+        /** The offset of the first byte not returned yet. */
+        private long myPosition = 0;
+    }
+
+    /** The cursors, by absolute path. */
+    private final Map<String, Cursor> myCursors = new HashMap<>();
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -10,23 +10,38 @@
 
 package org.expath.file;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channel;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Utilities for implementing the functions of the EXPath File module.
@@ -58,56 +73,106 @@ class Util
         }
     }
 
+    /**
+     * Return the charset for an encoding name.
+     * 
+     * Charsets are cached by name, so looking the same name up again is just
+     * a map access.
+     */
     public static Charset getCharset(String encoding)
             throws FileException
     {
+        Charset cs = CHARSETS.get(encoding);
+        if ( cs != null ) {
+            return cs;
+        }
         try {
-            return Charset.forName(encoding);
+            cs = Charset.forName(encoding);
         }
         catch ( IllegalCharsetNameException | UnsupportedCharsetException ex ) {
             throw FileException.unknownEncoding("Unsupported encoding: " + encoding, ex);
         }
+        if ( CHARSETS.size() < MAX_CHARSETS ) {
+            CHARSETS.put(encoding, cs);
+        }
+        return cs;
+    }
+
+    /**
+     * Return a decoder for a charset, reset, from a pool local to the thread.
+     * 
+     * It reports malformed input and unmappable characters.  It must only be
+     * used within the calling method, and not be used again after calling any
+     * other method which could also use a pooled decoder.  Do not use it for
+     * decoding lazily, like a {@link LineReader}.
+     */
+    public static CharsetDecoder getDecoder(Charset encoding)
+    {
+        Map<Charset, CharsetDecoder> decoders = DECODERS.get();
+        CharsetDecoder decoder = decoders.get(encoding);
+        if ( decoder == null ) {
+            decoder = encoding.newDecoder();
+            decoders.put(encoding, decoder);
+        }
+        return decoder.reset();
     }
 
-    public static byte[] readByteArray(InputStream in)
-            throws IOException
+    /**
+     * Return an encoder for a charset, reset, from a pool local to the thread.
+     * 
+     * It replaces malformed input and unmappable characters, the same way as
+     * {@link String#getBytes(Charset)}.  The same restrictions apply as for
+     * {@link #getDecoder(Charset)}.
+     */
+    public static CharsetEncoder getEncoder(Charset encoding)
     {
-        // the buffer, 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        int read;
-        byte[] buf = new byte[4096];
-        // suck it all
-        while ( (read = in.read(buf, 0, buf.length)) != -1 ) {
-            out.write(buf, 0, read);
+        Map<Charset, CharsetEncoder> encoders = ENCODERS.get();
+        CharsetEncoder encoder = encoders.get(encoding);
+        if ( encoder == null ) {
+            encoder = newReplacingEncoder(encoding);
+            encoders.put(encoding, encoder);
         }
-        // to byte[]
-        return out.toByteArray();
+        return encoder.reset();
     }
 
-    public static byte[] readByteArray(InputStream in, long length)
+    /**
+     * Return a new encoder replacing the chars it cannot encode.
+     */
+    public static CharsetEncoder newReplacingEncoder(Charset encoding)
+    {
+        return encoding.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Encode a string with a pooled encoder.
+     * 
+     * Return a buffer backed by an array, with the bytes from 0 to its limit.
+     */
+    public static ByteBuffer encode(String value, Charset encoding)
             throws FileException
-                 , IOException
     {
-        // the buffer, 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        int total = 0;
-        byte[] buf = new byte[4096];
-        // suck it all
-        while ( total < length ) {
-            long to_read = length - total;
-            if ( to_read > buf.length ) {
-                to_read = buf.length;
-            }
-            // casting to_read to int is safe, as it is at maximum buf.length
-            int read = in.read(buf, 0, (int) to_read);
-            if ( read < 0 ) {
-                throw FileException.outOfRange("Not enough bytes in file, read: " + total);
-            }
-            out.write(buf, 0, read);
-            total += read;
+        try {
+            return getEncoder(encoding).encode(CharBuffer.wrap(value));
         }
-        // to byte[]
-        return out.toByteArray();
+        catch ( CharacterCodingException ex ) {
+            // cannot happen, as the encoder replaces any error
+            throw FileException.ioError("Encoding error (" + encoding + ")", ex);
+        }
+    }
+
+    /**
+     * Whether ASCII bytes always decode to the same ASCII chars in a charset.
+     * 
+     * For such charsets, a sequence of bytes all below 0x80 can be turned into
+     * a string without a decoder, byte by byte.
+     */
+    public static boolean isAsciiCompatible(Charset encoding)
+    {
+        return StandardCharsets.UTF_8.equals(encoding)
+                || StandardCharsets.US_ASCII.equals(encoding)
+                || StandardCharsets.ISO_8859_1.equals(encoding);
     }
 
     public static void close(InputStream in)
@@ -149,6 +214,19 @@ class Util
         }
     }
 
+    public static void close(Channel ch)
+            throws FileException
+    {
+        if ( ch != null ) {
+            try {
+                ch.close();
+            }
+            catch ( IOException ex ) {
+                throw FileException.ioError("Error closing the channel", ex);
+            }
+        }
+    }
+
     public static void close(RandomAccessFile f)
             throws FileException
     {
@@ -175,75 +253,160 @@ class Util
         return f;
     }
 
-    public static InputStream openInputStream(String file)
+    public static FileChannel openReadChannel(String file)
             throws FileException
     {
-        File f = new File(file);
+        File f = openFile(file);
         try {
-            return new FileInputStream(f);
+            return FileChannel.open(f.toPath(), StandardOpenOption.READ);
         }
-        catch ( FileNotFoundException ex ) {
-            if ( f.isDirectory() ) {
-                throw FileException.isDir("File points to a directory: " + file, ex);
-            }
-            throw FileException.notFound("File not found: " + file, ex);
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error opening the file: " + file, ex);
+        }
+    }
+
+    /**
+     * Encode the first {@code length} bytes of {@code bytes} in base64, into {@code chars}.
+     * 
+     * Return the number of chars written.  The last group is padded with
+     * {@code '='} if {@code length} is not a multiple of 3.
+     */
+    public static int encodeBase64(byte[] bytes, int length, char[] chars)
+    {
+        int o = 0;
+        int i = 0;
+        for ( ; i + 2 < length; i += 3 ) {
+            int group = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+            chars[o++] = BASE64[group >>> 18];
+            chars[o++] = BASE64[group >>> 12 & 0x3F];
+            chars[o++] = BASE64[group >>> 6 & 0x3F];
+            chars[o++] = BASE64[group & 0x3F];
         }
+        if ( i < length ) {
+            int group = (bytes[i] & 0xFF) << 16 | (i + 1 < length ? (bytes[i + 1] & 0xFF) << 8 : 0);
+            chars[o++] = BASE64[group >>> 18];
+            chars[o++] = BASE64[group >>> 12 & 0x3F];
+            chars[o++] = i + 1 < length ? BASE64[group >>> 6 & 0x3F] : '=';
+            chars[o++] = '=';
+        }
+        return o;
     }
 
-    public static Writer openWriter(String file, boolean append)
+    /**
+     * Open an asynchronous channel to read a file.
+     * 
+     * The completion handlers of the channel are run by {@code executor}, or
+     * by the default thread pool if it is null.
+     */
+    public static AsynchronousFileChannel openAsyncReadChannel(String file, ExecutorService executor)
+            throws FileException
+    {
+        File f = openFile(file);
+        Set<OpenOption> options = Collections.<OpenOption>singleton(StandardOpenOption.READ);
+        try {
+            return AsynchronousFileChannel.open(f.toPath(), options, executor);
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error opening the file: " + file, ex);
+        }
+    }
+
+    /**
+     * Open an asynchronous channel to write a file, creating it if needed.
+     * 
+     * Unless {@code append} is true, the file is truncated.  The completion
+     * handlers of the channel are run by {@code executor}, or by the default
+     * thread pool if it is null.
+     */
+    public static AsynchronousFileChannel openAsyncWriteChannel(String file, ExecutorService executor, boolean append)
             throws FileException
     {
         File f = new File(file);
+        Set<OpenOption> options = new HashSet<>();
+        options.add(StandardOpenOption.WRITE);
+        options.add(StandardOpenOption.CREATE);
+        if ( ! append ) {
+            options.add(StandardOpenOption.TRUNCATE_EXISTING);
+        }
         try {
-            return new FileWriter(f, append);
+            return AsynchronousFileChannel.open(f.toPath(), options, executor);
         }
         catch ( IOException ex ) {
             if ( f.isDirectory() ) {
                 throw FileException.isDir("The file already exists and is a directory: " + file, ex);
             }
-            if ( ! f.exists() && ! f.getParentFile().isDirectory() ) {
+            if ( ! f.exists() && ! f.getAbsoluteFile().getParentFile().isDirectory() ) {
                 throw FileException.noDir("The file must be created and its directory does not exist: " + file, ex);
             }
             throw FileException.ioError("Error creating or opening the file: " + file, ex);
         }
     }
 
-    public static OutputStream openOutputStream(String file, boolean append)
+    public static FileChannel openWriteChannel(String file, boolean append)
             throws FileException
     {
         File f = new File(file);
         try {
-            return new FileOutputStream(f, append);
+            if ( append ) {
+                return FileChannel.open(f.toPath(), StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            return FileChannel.open(f.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         }
-        catch ( FileNotFoundException ex ) {
+        catch ( IOException ex ) {
             if ( f.isDirectory() ) {
                 throw FileException.isDir("The file already exists and is a directory: " + file, ex);
             }
-            if ( ! f.exists() && ! f.getParentFile().isDirectory() ) {
+            if ( ! f.exists() && ! f.getAbsoluteFile().getParentFile().isDirectory() ) {
                 throw FileException.noDir("The file must be created and its directory does not exist: " + file, ex);
             }
             throw FileException.ioError("Error creating or opening the file: " + file, ex);
         }
     }
 
-    public static RandomAccessFile openRandomAccess(String file)
+    /**
+     * Open a file to write at any position, creating it if it does not exist.
+     */
+    public static FileChannel openRandomAccessChannel(String file)
             throws FileException
     {
         File f = new File(file);
-        RandomAccessFile raf;
         try {
-            return new RandomAccessFile(f, "rw");
+            return FileChannel.open(f.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
         }
-        catch ( FileNotFoundException ex ) {
+        catch ( IOException ex ) {
             if ( f.isDirectory() ) {
                 throw FileException.isDir("The file already exists and is a directory: " + file, ex);
             }
-            if ( ! f.exists() && ! f.getParentFile().isDirectory() ) {
+            if ( ! f.exists() && ! f.getAbsoluteFile().getParentFile().isDirectory() ) {
                 throw FileException.noDir("The file must be created and its directory does not exist: " + file, ex);
             }
             throw FileException.ioError("Error creating or opening the file: " + file, ex);
         }
     }
+
+    /** The base64 alphabet. */
+    private static final char[] BASE64
+            = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    /** The maximum number of encoding names kept in the cache. */
+    private static final int MAX_CHARSETS = 256;
+    /** The charsets, by encoding name. */
+    private static final ConcurrentMap<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<Charset, CharsetDecoder>> DECODERS
+            = new ThreadLocal<Map<Charset, CharsetDecoder>>() {
+                @Override
+                protected Map<Charset, CharsetDecoder> initialValue() {
+                    return new HashMap<>();
+                }
+            };
+    private static final ThreadLocal<Map<Charset, CharsetEncoder>> ENCODERS
+            = new ThreadLocal<Map<Charset, CharsetEncoder>>() {
+                @Override
+                protected Map<Charset, CharsetEncoder> initialValue() {
+                    return new HashMap<>();
+                }
+            };
 }
 
 
@@ -10,12 +10,27 @@
 
 package org.expath.file;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 import org.expath.tools.model.Sequence;
 import org.expath.tools.ToolsException;
 import org.expath.tools.model.Element;
@@ -31,6 +46,147 @@ import org.expath.tools.serial.SerialParameters;
  */
 public class Write
 {
+    /**
+     * Whether text and serialized content is compressed while being written.
+     * 
+     * It applies to {@code write}, {@code writeText*} and their {@code append*}
+     * counterparts, and defaults to {@link Compression#NONE}.  Content is
+     * compressed as it is written, it never touches the disk uncompressed.
+     * Appending to a gzip file adds a new gzip member to it, which is still a
+     * valid gzip file.  Binary writes always write the raw bytes.
+     */
+    public Compression getCompression()
+    {
+        return myCompression;
+    }
+
+    public void setCompression(Compression compression)
+    {
+        myCompression = compression;
+    }
+
+    /**
+     * The size of the buffer text is encoded into before being written, in bytes.
+     * 
+     * Text written without an explicit encoding is buffered, then written to
+     * the file only when the buffer is full, so writing many small strings (like
+     * lines) does not involve a system call for each of them.  The output of
+     * the serializer, for {@code write} and {@code append}, is buffered the
+     * same way, in a direct buffer written straight to the file channel.
+     */
+    public int getBufferSize()
+    {
+        return myBufferSize;
+    }
+
+    public void setBufferSize(int size)
+    {
+        if ( size < 1 ) {
+            throw new IllegalArgumentException("Buffer size must be at least 1: " + size);
+        }
+        myBufferSize = size;
+    }
+
+    /**
+     * Whether files are overwritten atomically.
+     * 
+     * If true, {@code write}, {@code writeBinary} (without an offset) and the
+     * {@code writeText*} functions write the content to a temporary file in
+     * the same directory, then rename it to the target file.  Readers never
+     * see a partially written file, and after a failure or a crash, the file
+     * still has its previous content.  Appends are not affected.
+     *
+     * The new file keeps the POSIX permissions of the file it replaces, and
+     * its owner and group when the process is allowed to set them.  Other
+     * attributes, like ACLs, extended attributes or the creation time, are
+     * not copied.  If the file is a symbolic link, the file it points to is
+     * replaced and the link is kept, but a dangling link is replaced by a
+     * regular file.
+     */
+    public boolean isAtomic()
+    {
+        return myAtomic;
+    }
+
+    public void setAtomic(boolean atomic)
+    {
+        myAtomic = atomic;
+    }
+
+    /**
+     * How far the content is forced to disk before a write returns.
+     * 
+     * It applies to all writes and appends, including patches.  In atomic
+     * mode, with a level other than {@link Durability#NONE}, the directory is
+     * also forced to disk after the rename.
+     */
+    public Durability getDurability()
+    {
+        return myDurability;
+    }
+
+    public void setDurability(Durability durability)
+    {
+        Util.ensureNotNull(durability, "durability cannot be null");
+        myDurability = durability;
+    }
+
+    /**
+     * The coordinator merging the appends made concurrently to the same file, if any.
+     * 
+     * If set, {@code append}, {@code appendBinary} and the {@code appendText*}
+     * functions queue their content on it, as one record for each call, instead
+     * of opening the file themselves.  Appends to gzipped files do not use it.
+     * The durability level then applies to each batch of records.
+     */
+    public AppendCoordinator getAppendCoordinator()
+    {
+        return myAppender;
+    }
+
+    public void setAppendCoordinator(AppendCoordinator appender)
+    {
+        myAppender = appender;
+    }
+
+    /**
+     * The cache keeping files open between writes, if any.
+     * 
+     * If set, the writes and appends which do not replace the file (that is,
+     * all of them except in atomic mode) take the file from it, instead of
+     * opening and closing it each time.  Appends through a coordinator open
+     * the file once per batch anyway, and do not use it.
+     */
+    public HandleCache getHandleCache()
+    {
+        return myHandleCache;
+    }
+
+    public void setHandleCache(HandleCache cache)
+    {
+        myHandleCache = cache;
+    }
+
+    /**
+     * The total time spent forcing files to disk, in nanoseconds.
+     * 
+     * Divided by {@link #getSyncCount()}, it gives the latency added to each
+     * write by the durability level.  When appends are merged by a coordinator,
+     * the time of a batch is counted once, so this is the amortized latency.
+     */
+    public long getSyncTime()
+    {
+        return mySyncTime.get();
+    }
+
+    /**
+     * The number of writes forced to disk.
+     */
+    public long getSyncCount()
+    {
+        return mySyncCount.get();
+    }
+
     // file:append($file as xs:string,
     //             $items as item()*) as empty-sequence()
     // file:append($file as xs:string,
@@ -55,7 +211,7 @@ public class Write
     public void append(String file, Sequence items, SerialParameters params)
             throws FileException
     {
-        write(file, items, params, true);
+        write(file, items, params, true, 0);
     }
 
     // file:append-binary($file as xs:string,
@@ -87,7 +243,7 @@ public class Write
     public void appendText(String file, String value, String encoding)
             throws FileException
     {
-        writeText(file, value, encoding, true);
+        writeText(file, value, encoding, true, 0);
     }
 
     // file:append-text-lines($file as xs:string,
@@ -108,7 +264,7 @@ public class Write
     public void appendTextLines(String file, List<String> values, String encoding)
             throws FileException
     {
-        writeTextLines(file, values, encoding, true);
+        writeTextLines(file, values, encoding, true, 0);
     }
 
     // file:write($file as xs:string,
@@ -135,7 +291,18 @@ public class Write
     public void write(String file, Sequence items, SerialParameters params)
             throws FileException
     {
-        write(file, items, params, false);
+        write(file, items, params, false, 0);
+    }
+
+    /**
+     * Serialize items to a file, with a hint about the size of the result.
+     * 
+     * See {@link #writeText(String, String, String, long)} for the size hint.
+     */
+    public void write(String file, Sequence items, SerialParameters params, long size_hint)
+            throws FileException
+    {
+        write(file, items, params, false, size_hint);
     }
 
     // file:write-binary($file as xs:string,
@@ -156,42 +323,58 @@ public class Write
     public void writeBinary(String file, byte[] value, long offset)
             throws FileException
     {
-        // is offset negative?
-        if ( offset < 0 ) {
-            throw FileException.outOfRange("Offset is negative: " + offset);
-        }
-        // open the file
-        RandomAccessFile f = Util.openRandomAccess(file);
-        // global try/catch to properly close the file, whatever exec path is taken
+        writePatches(file, Collections.singletonList(new Patch(offset, value)));
+    }
+
+    /**
+     * Write several patches to a file, opening it only once.
+     * 
+     * The patches are applied in order, so if they overlap, the last one wins.
+     * Each offset is checked as for {@link #writeBinary(String, byte[], long)},
+     * against the size of the file after the previous patches, and nothing is
+     * written if one of them is out of range.  Patches next to each other are
+     * written with one gathering write.  They do not have to be sorted, but
+     * they are only reordered if none of them overlap.
+     */
+    public void writePatches(String file, List<Patch> patches)
+            throws FileException
+    {
+        // check before opening, so a new file is not created for nothing
+        checkPatches(file, patches, new File(file).length());
+        FileChannel ch = Util.openRandomAccessChannel(file);
         try {
-            // get its length
-            long len;
             try {
-                len = f.length();
+                // the file may have changed since then
+                checkPatches(file, patches, ch.size());
             }
             catch ( IOException ex ) {
                 throw FileException.ioError("Error getting the size of the file: " + file, ex);
             }
-            // is offset greater than file size?
-            if ( offset > len ) {
-                throw FileException.outOfRange("Offset (" + offset + ") is greater than the file size (" + len + "): " + file);
+            List<Patch> ordered = sortPatches(patches);
+            int i = 0;
+            while ( i < ordered.size() ) {
+                // the run of patches next to each other, from i to j excluded
+                int j = i + 1;
+                while ( j < ordered.size() && ordered.get(j).getOffset() == ordered.get(j - 1).getEnd() ) {
+                    ++j;
+                }
+                writeRun(ch, file, ordered.subList(i, j));
+                i = j;
             }
-            // position to offset
-            try {
-                f.seek(offset);
+            if ( myDurability != Durability.NONE ) {
+                long start = System.nanoTime();
+                try {
+                    ch.force(myDurability == Durability.FULL);
+                }
+                catch ( IOException ex ) {
+                    throw FileException.ioError("Error forcing the file to disk: " + file, ex);
+                }
+                mySyncTime.addAndGet(System.nanoTime() - start);
+                mySyncCount.incrementAndGet();
             }
-            catch ( IOException ex ) {
-                throw FileException.ioError("Error seeking to offset (" + offset + ") on the file: " + file, ex);
-            }
-            // write it!
-            f.write(value);
-        }
-        catch ( IOException ex ) {
-            throw FileException.ioError("Error writing at offset (" + offset + ") "
-                    + value.length + " bytes in the file: " + file, ex);
         }
         finally {
-            Util.close(f);
+            Util.close(ch);
         }
     }
 
@@ -213,7 +396,24 @@ public class Write
     public void writeText(String file, String value, String encoding)
             throws FileException
     {
-        writeText(file, value, encoding, false);
+        writeText(file, value, encoding, false, 0);
+    }
+
+    /**
+     * Write text to a file, with a hint about the size of the encoded text.
+     * 
+     * The file is first extended to {@code size_hint} bytes, then truncated to
+     * the size actually written, once done.  On file systems allocating space
+     * when a file is extended, the file is allocated at once, instead of piece
+     * by piece as the content is written, which limits its fragmentation.  On
+     * file systems creating sparse files instead (like ext4 or XFS), this has
+     * no effect on the allocation.  The hint is ignored if it is not positive,
+     * or when the file comes from the handle cache.
+     */
+    public void writeText(String file, String value, String encoding, long size_hint)
+            throws FileException
+    {
+        writeText(file, value, encoding, false, size_hint);
     }
 
     // file:write-text-lines($file as xs:string,
@@ -234,7 +434,18 @@ public class Write
     public void writeTextLines(String file, List<String> values, String encoding)
             throws FileException
     {
-        writeTextLines(file, values, encoding, false);
+        writeTextLines(file, values, encoding, false, 0);
+    }
+
+    /**
+     * Write lines to a file, with a hint about the size of the encoded text.
+     * 
+     * See {@link #writeText(String, String, String, long)} for the size hint.
+     */
+    public void writeTextLines(String file, List<String> values, String encoding, long size_hint)
+            throws FileException
+    {
+        writeTextLines(file, values, encoding, false, size_hint);
     }
 
     private void write(String file, Sequence items, Element params, boolean append)
@@ -242,28 +453,41 @@ public class Write
     {
         try {
             SerialParameters sp = SerialParameters.parse(params);
-            write(file, items, sp, append);
+            write(file, items, sp, append, 0);
         }
         catch ( ToolsException ex ) {
             throw FileException.ioError("Error parsing the serialization parameters", ex);
         }
     }
 
-    private void write(String file, Sequence items, SerialParameters params, boolean append)
+    private void write(String file, Sequence items, SerialParameters params, boolean append, long size_hint)
             throws FileException
     {
         Util.ensureNotNull(file, "file cannot be null");
         Util.ensureNotNull(items, "items cannot be null");
-        OutputStream out = null;
-        try {
-            out = Util.openOutputStream(file, append);
-            items.serialize(out, params);
+        AppendCoordinator appender = coordinator(file, append);
+        if ( appender != null ) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                items.serialize(out, params);
+            }
+            catch ( ToolsException ex ) {
+                throw FileException.ioError("Error serializing to the file: " + file, ex);
+            }
+            appendRecord(appender, file, ByteBuffer.wrap(out.toByteArray()));
+            return;
+        }
+        try ( WriteTarget target = openTarget(file, append, size_hint) ) {
+            try ( OutputStream out = openOutputStream(target, file) ) {
+                items.serialize(out, params);
+            }
+            commit(target);
         }
         catch ( ToolsException ex ) {
             throw FileException.ioError("Error serializing to the file: " + file, ex);
         }
-        finally {
-            Util.close(out);
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error serializing to the file: " + file, ex);
         }
     }
 
@@ -272,16 +496,14 @@ public class Write
     {
         Util.ensureNotNull(file, "file cannot be null");
         Util.ensureNotNull(value, "value cannot be null");
-        OutputStream out = null;
-        try {
-            out = Util.openOutputStream(file, append);
-            out.write(value);
-        }
-        catch ( IOException ex ) {
-            throw FileException.ioError("Error writing binary to the file: " + file, ex);
+        AppendCoordinator appender = coordinator(file, append);
+        if ( appender != null ) {
+            appendRecord(appender, file, ByteBuffer.wrap(value));
+            return;
         }
-        finally {
-            Util.close(out);
+        try ( WriteTarget target = openTarget(file, append) ) {
+            target.write(ByteBuffer.wrap(value));
+            commit(target);
         }
     }
 
@@ -290,39 +512,39 @@ public class Write
     {
         Util.ensureNotNull(file, "file cannot be null");
         Util.ensureNotNull(value, "value cannot be null");
-        Writer out = null;
-        try {
-            out = Util.openWriter(file, append);
-            out.write(value);
+        AppendCoordinator appender = coordinator(file, append);
+        if ( appender != null ) {
+            appendRecord(appender, file, Util.encode(value, StandardCharsets.UTF_8));
+            return;
+        }
+        try ( WriteTarget target = openTarget(file, append) ) {
+            try ( Writer out = openWriter(target, file) ) {
+                out.write(value);
+            }
+            commit(target);
         }
         catch ( IOException ex ) {
             throw FileException.ioError("Error writing text to the file: " + file, ex);
         }
-        finally {
-            Util.close(out);
-        }
     }
 
-    private void writeText(String file, String value, String encoding, boolean append)
+    private void writeText(String file, String value, String encoding, boolean append, long size_hint)
             throws FileException
     {
         Util.ensureNotNull(file, "file cannot be null");
         Util.ensureNotNull(value, "value cannot be null");
         Util.ensureNotNull(encoding, "encoding cannot be null");
-        OutputStream out = null;
-        try {
-            out = Util.openOutputStream(file, append);
-            byte[] bytes = value.getBytes(encoding);
-            out.write(bytes);
-        }
-        catch ( UnsupportedEncodingException ex ) {
-            throw FileException.unknownEncoding("Unsupported encoding: " + encoding, ex);
-        }
-        catch ( IOException ex ) {
-            throw FileException.ioError("Error writing text to the file: " + file, ex);
+        Charset cs = Util.getCharset(encoding);
+        AppendCoordinator appender = coordinator(file, append);
+        if ( appender != null ) {
+            appendRecord(appender, file, Util.encode(value, cs));
+            return;
         }
-        finally {
-            Util.close(out);
+        try ( WriteTarget target = openTarget(file, append, size_hint) ) {
+            try ( TextOutput out = new TextOutput(file, openChannel(target, file), cs) ) {
+                out.write(value);
+            }
+            commit(target);
         }
     }
 
@@ -332,53 +554,359 @@ public class Write
         Util.ensureNotNull(file, "file cannot be null");
         Util.ensureNotNull(values, "values cannot be null");
         final String nl = new Properties().lineSeparator();
-        Writer out = null;
-        try {
-            out = Util.openWriter(file, append);
-            for ( String line : values ) {
-                out.write(line);
-                out.write(nl);
+        AppendCoordinator appender = coordinator(file, append);
+        if ( appender != null ) {
+            appendRecord(appender, file, Util.encode(joinLines(values, nl), StandardCharsets.UTF_8));
+            return;
+        }
+        try ( WriteTarget target = openTarget(file, append) ) {
+            try ( Writer out = openWriter(target, file) ) {
+                for ( String line : values ) {
+                    out.write(line);
+                    out.write(nl);
+                }
             }
+            commit(target);
         }
         catch ( IOException ex ) {
             throw FileException.ioError("Error writing text to the file: " + file, ex);
         }
-        finally {
-            Util.close(out);
-        }
     }
 
-    private void writeTextLines(String file, List<String> values, String encoding, boolean append)
+    private void writeTextLines(String file, List<String> values, String encoding, boolean append, long size_hint)
             throws FileException
     {
         Util.ensureNotNull(file, "file cannot be null");
         Util.ensureNotNull(values, "values cannot be null");
         Util.ensureNotNull(encoding, "encoding cannot be null");
-        // get the newline separator, as bytes
-        final String nlstr = new Properties().lineSeparator();
-        final byte[] nl;
-        try {
-            nl = nlstr.getBytes(encoding);
+        Charset cs = Util.getCharset(encoding);
+        final String nl = new Properties().lineSeparator();
+        AppendCoordinator appender = coordinator(file, append);
+        if ( appender != null ) {
+            appendRecord(appender, file, Util.encode(joinLines(values, nl), cs));
+            return;
         }
-        catch ( UnsupportedEncodingException ex ) {
-            throw FileException.unknownEncoding("Unsupported encoding: " + encoding, ex);
+        try ( WriteTarget target = openTarget(file, append, size_hint) ) {
+            try ( TextOutput out = new TextOutput(file, openChannel(target, file), cs) ) {
+                for ( String line : values ) {
+                    out.write(line);
+                    out.write(nl);
+                }
+            }
+            commit(target);
+        }
+    }
+
+    /**
+     * The coordinator to use for this write, or null if it does not use any.
+     */
+    private AppendCoordinator coordinator(String file, boolean append)
+    {
+        AppendCoordinator appender = myAppender;
+        return append && appender != null && ! isGzipped(file) ? appender : null;
+    }
+
+    /**
+     * Append a record through the coordinator, and wait for it to be written.
+     */
+    private void appendRecord(AppendCoordinator appender, String file, ByteBuffer record)
+            throws FileException
+    {
+        Durability durability = myDurability;
+        long nanos = appender.append(file, record, durability);
+        if ( durability != Durability.NONE ) {
+            mySyncTime.addAndGet(nanos);
+            mySyncCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Check the offsets of the patches, against a file of {@code len} bytes.
+     */
+    private static void checkPatches(String file, List<Patch> patches, long len)
+            throws FileException
+    {
+        for ( Patch p : patches ) {
+            long offset = p.getOffset();
+            if ( offset < 0 ) {
+                throw FileException.outOfRange("Offset is negative: " + offset);
+            }
+            if ( offset > len ) {
+                throw FileException.outOfRange("Offset (" + offset + ") is greater than the file size (" + len + "): " + file);
+            }
+            len = Math.max(len, p.getEnd());
+        }
+    }
+
+    /**
+     * The patches sorted by offset, or as is if they are already sorted or if some overlap.
+     */
+    private static List<Patch> sortPatches(List<Patch> patches)
+    {
+        List<Patch> sorted = new ArrayList<>(patches);
+        Collections.sort(sorted, PATCH_ORDER);
+        for ( int i = 1; i < sorted.size(); ++i ) {
+            if ( sorted.get(i).getOffset() < sorted.get(i - 1).getEnd() ) {
+                return patches;
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Write patches next to each other, with as few gathering writes as possible.
+     */
+    private static void writeRun(FileChannel ch, String file, List<Patch> run)
+            throws FileException
+    {
+        long offset = run.get(0).getOffset();
+        ByteBuffer[] bufs = new ByteBuffer[run.size()];
+        long remaining = 0;
+        for ( int i = 0; i < bufs.length; ++i ) {
+            bufs[i] = ByteBuffer.wrap(run.get(i).getBytes());
+            remaining += bufs[i].remaining();
         }
-        OutputStream out = null;
         try {
-            out = Util.openOutputStream(file, true);
-            for ( String line : values ) {
-                byte[] bytes = line.getBytes(encoding);
-                out.write(bytes);
-                out.write(nl);
+            ch.position(offset);
+            // the last patches may be empty, so count the bytes
+            while ( remaining > 0 ) {
+                remaining -= ch.write(bufs);
             }
         }
         catch ( IOException ex ) {
-            throw FileException.ioError("Error writing text to the file: " + file, ex);
+            throw FileException.ioError("Error writing at offset (" + offset + ") "
+                    + run.size() + " patches in the file: " + file, ex);
         }
-        finally {
-            Util.close(out);
+    }
+
+    private static String joinLines(List<String> values, String nl)
+    {
+        StringBuilder buf = new StringBuilder();
+        for ( String line : values ) {
+            buf.append(line).append(nl);
+        }
+        return buf.toString();
+    }
+
+    private WriteTarget openTarget(String file, boolean append)
+            throws FileException
+    {
+        return WriteTarget.open(file, append, myAtomic, myDurability, myHandleCache);
+    }
+
+    /**
+     * Open the target of a write, extended to {@code size_hint} bytes if it is an overwrite.
+     */
+    private WriteTarget openTarget(String file, boolean append, long size_hint)
+            throws FileException
+    {
+        WriteTarget target = openTarget(file, append);
+        if ( ! append && size_hint > 0 ) {
+            try {
+                target.preallocate(size_hint);
+            }
+            catch ( FileException ex ) {
+                target.close();
+                throw ex;
+            }
+        }
+        return target;
+    }
+
+    private void commit(WriteTarget target)
+            throws FileException
+    {
+        long nanos = target.commit();
+        if ( myDurability != Durability.NONE ) {
+            mySyncTime.addAndGet(nanos);
+            mySyncCount.incrementAndGet();
+        }
+    }
+
+    private WritableByteChannel openChannel(WriteTarget target, String file)
+            throws FileException
+    {
+        if ( ! isGzipped(file) ) {
+            return target.channel();
         }
+        return Channels.newChannel(openOutputStream(target, file));
     }
+
+    private OutputStream openOutputStream(WriteTarget target, String file)
+            throws FileException
+    {
+        int size = myBufferSize;
+        OutputStream out = new ChannelOutputStream(target.channel(), bufferPool(size));
+        if ( ! isGzipped(file) ) {
+            return out;
+        }
+        try {
+            // gather the small chunks before they reach the deflater too
+            return new BufferedOutputStream(new GZIPOutputStream(out, GZIP_BUFFER_SIZE), size);
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error writing the gzip header to the file: " + file, ex);
+        }
+    }
+
+    /**
+     * The pool of buffers of {@code size} bytes: the default one, or one for this object.
+     */
+    private BufferPool bufferPool(int size)
+    {
+        BufferPool pool = BufferPool.getDefault();
+        if ( pool.getBufferSize() == size ) {
+            return pool;
+        }
+        pool = myBufferPool;
+        if ( pool == null || pool.getBufferSize() != size ) {
+            // a race only creates a pool too many
+            pool = new BufferPool(size, BufferPool.DEFAULT_MAX_RETAINED);
+            myBufferPool = pool;
+        }
+        return pool;
+    }
+
+    private Writer openWriter(WriteTarget target, String file)
+            throws FileException
+    {
+        CharsetEncoder encoder = Util.newReplacingEncoder(StandardCharsets.UTF_8);
+        return Channels.newWriter(openChannel(target, file), encoder, myBufferSize);
+    }
+
+    private boolean isGzipped(String file)
+    {
+        switch ( myCompression ) {
+            case GZIP:
+                return true;
+            case DETECT:
+                return file.endsWith(GZIP_EXTENSION);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Encode text into a channel, by chunks, through one pooled buffer.
+     * 
+     * The memory used does not depend on the size of the text.  The encoder is
+     * fed all the strings as one single input, so a stateful charset (e.g. a
+     * byte order mark for UTF-16) behaves as for one single string.  A high
+     * surrogate at the end of a string is malformed, and replaced.
+     */
+    private static class TextOutput
+            implements AutoCloseable
+    {
+        public TextOutput(String file, WritableByteChannel out, Charset encoding)
+        {
+            myFile = file;
+            myOut = out;
+            myEncoder = Util.getEncoder(encoding);
+            ByteBuffer buf = BufferPool.getDefault().acquireHeap();
+            // leave room for the longest sequence of bytes for one char
+            myBuffer = buf.capacity() < MIN_BUFFER_SIZE ? ByteBuffer.allocate(MIN_BUFFER_SIZE) : buf;
+        }
+
+        public void write(String value)
+                throws FileException
+        {
+            try {
+                CharBuffer in = CharBuffer.wrap(value);
+                encode(in, false);
+                if ( in.hasRemaining() ) {
+                    // a lone high surrogate, waiting for its low surrogate
+                    in.position(in.limit());
+                    ensureRoom(myEncoder.replacement().length);
+                    myBuffer.put(myEncoder.replacement());
+                }
+            }
+            catch ( IOException ex ) {
+                throw FileException.ioError("Error writing text to the file: " + myFile, ex);
+            }
+        }
+
+        @Override
+        public void close()
+                throws FileException
+        {
+            try {
+                encode(CharBuffer.allocate(0), true);
+                while ( myEncoder.flush(myBuffer).isOverflow() ) {
+                    drain();
+                }
+                drain();
+            }
+            catch ( IOException ex ) {
+                throw FileException.ioError("Error writing text to the file: " + myFile, ex);
+            }
+            finally {
+                BufferPool.getDefault().release(myBuffer);
+                Util.close(myOut);
+            }
+        }
+
+        private void encode(CharBuffer in, boolean end)
+                throws IOException
+        {
+            while ( true ) {
+                CoderResult res = myEncoder.encode(in, myBuffer, end);
+                if ( ! res.isOverflow() ) {
+                    // the encoder replaces errors, so this is an underflow
+                    return;
+                }
+                drain();
+            }
+        }
+
+        private void ensureRoom(int length)
+                throws IOException
+        {
+            if ( myBuffer.remaining() < length ) {
+                drain();
+            }
+        }
+
+        private void drain()
+                throws IOException
+        {
+            myBuffer.flip();
+            while ( myBuffer.hasRemaining() ) {
+                myOut.write(myBuffer);
+            }
+            myBuffer.clear();
+        }
+
+        private final String myFile;
+        private final WritableByteChannel myOut;
+        private final CharsetEncoder myEncoder;
+        private final ByteBuffer myBuffer;
+    }
+
+    private static final Comparator<Patch> PATCH_ORDER = new Comparator<Patch>() {
+        @Override
+        public int compare(Patch p1, Patch p2)
+        {
+            return Long.compare(p1.getOffset(), p2.getOffset());
+        }
+    };
+    /** The default size of the buffer text is encoded into: 64 KiB. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /** The minimum size of the buffer text is encoded into, if the pool ones are smaller. */
+    private static final int MIN_BUFFER_SIZE = 64;
+    /** The extension of the files gzipped by {@link Compression#DETECT}. */
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private volatile Compression myCompression = Compression.NONE;
+    private volatile int myBufferSize = DEFAULT_BUFFER_SIZE;
+    /** The buffers for serialization, if the buffer size is not the one of the default pool. */
+    private volatile BufferPool myBufferPool = null;
+    private volatile boolean myAtomic = false;
+    private volatile Durability myDurability = Durability.NONE;
+    private volatile AppendCoordinator myAppender = null;
+    private volatile HandleCache myHandleCache = null;
+    private final AtomicLong mySyncTime = new AtomicLong();
+    private final AtomicLong mySyncCount = new AtomicLong();
 }
 
 
@@ -0,0 +1,392 @@
+/****************************************************************************/
+/*  File:       WriteTarget.java                                            */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The file a write goes to, possibly through a temporary file.
+ *
+ * In atomic mode, the content is written to a temporary file in the same
+ * directory, which is then renamed to the target file.  Readers see either the
+ * previous content or the new one, never a partially written file, and after a
+ * crash the target file is left untouched.  Depending on the durability level,
+ * the file (and, for a rename, the directory) is forced to disk before the
+ * write returns.
+ *
+ * If the target file exists, the temporary file gets its POSIX permissions,
+ * and if allowed its owner and group.  If it is a symbolic link, the file it
+ * points to is replaced, and the link is kept.
+ *
+ * Write the content to {@link #channel()}, call {@link #commit()} once done,
+ * and always close the target.  Closing it without committing aborts the
+ * write, and removes the temporary file.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+class WriteTarget
+        implements AutoCloseable
+{
+    private WriteTarget(String file, FileChannel ch, Path temp, Path target, Durability durability,
+                        HandleCache cache, HandleCache.Handle handle)
+    {
+        myFile = file;
+        myChannel = ch;
+        myTemp = temp;
+        myTarget = target;
+        myDurability = durability;
+        myCache = cache;
+        myHandle = handle;
+    }
+
+    /**
+     * Open the target of a write.
+     *
+     * Atomic mode only applies when the file is overwritten, appends always
+     * go straight to the file.  If {@code cache} is not null, the file is taken
+     * from it, except in atomic mode, as a new file replaces the target then.
+     */
+    public static WriteTarget open(String file, boolean append, boolean atomic, Durability durability,
+                                   HandleCache cache)
+            throws FileException
+    {
+        if ( append || ! atomic ) {
+            if ( cache == null ) {
+                FileChannel ch = Util.openWriteChannel(file, append);
+                return new WriteTarget(file, ch, null, null, durability, null, null);
+            }
+            HandleCache.Handle h = cache.acquire(file);
+            if ( ! append ) {
+                try {
+                    h.channel.truncate(0);
+                }
+                catch ( IOException ex ) {
+                    cache.release(h, false);
+                    throw FileException.ioError("Error truncating the file: " + file, ex);
+                }
+            }
+            return new WriteTarget(file, h.channel, null, null, durability, cache, h);
+        }
+        File f = new File(file).getAbsoluteFile();
+        if ( f.isDirectory() ) {
+            throw FileException.isDir("The file already exists and is a directory: " + file);
+        }
+        boolean exists = f.exists();
+        if ( exists ) {
+            // replace the file a symbolic link points to, not the link itself
+            try {
+                f = f.toPath().toRealPath().toFile();
+            }
+            catch ( IOException ex ) {
+                throw FileException.ioError("Error resolving the file: " + file, ex);
+            }
+        }
+        File dir = f.getParentFile();
+        if ( dir == null || ! dir.isDirectory() ) {
+            throw FileException.noDir("The file must be created and its directory does not exist: " + file);
+        }
+        while ( true ) {
+            String name = "." + f.getName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_EXTENSION;
+            Path temp = dir.toPath().resolve(name);
+            FileChannel ch;
+            try {
+                ch = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+            }
+            catch ( FileAlreadyExistsException ex ) {
+                // very unlikely, just try another name
+                continue;
+            }
+            catch ( IOException ex ) {
+                throw FileException.ioError("Error creating a temporary file for: " + file, ex);
+            }
+            WriteTarget target = new WriteTarget(file, ch, temp, f.toPath(), durability, null, null);
+            if ( exists ) {
+                try {
+                    copyAttributes(f.toPath(), temp);
+                }
+                catch ( IOException ex ) {
+                    target.close();
+                    throw FileException.ioError("Error copying the attributes of the file: " + file, ex);
+                }
+            }
+            return target;
+        }
+    }
+
+    /**
+     * The channel to write the content to.
+     *
+     * Closing it does not close the file, so it can be wrapped in a stream or
+     * a writer, which can be closed to flush them, before committing.
+     */
+    public WritableByteChannel channel()
+    {
+        return myView;
+    }
+
+    /**
+     * Extend the file to {@code size} bytes, before writing its content.
+     *
+     * The file is truncated to the size actually written when the write is
+     * committed or aborted.  This is only for an overwrite, and it is ignored
+     * for a file from the handle cache, as it is open in append mode, which
+     * does not allow writing at a given position.
+     */
+    public void preallocate(long size)
+            throws FileException
+    {
+        if ( myHandle != null ) {
+            return;
+        }
+        try {
+            if ( size > myChannel.size() ) {
+                // the position of the channel is not changed by a positional write
+                myChannel.write(ByteBuffer.allocate(1), size - 1);
+                myPreallocated = true;
+            }
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error extending the file: " + myFile, ex);
+        }
+    }
+
+    /**
+     * Write all the bytes of {@code buf} to the file.
+     */
+    public void write(ByteBuffer buf)
+            throws FileException
+    {
+        try {
+            while ( buf.hasRemaining() ) {
+                myChannel.write(buf);
+            }
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error writing to the file: " + myFile, ex);
+        }
+    }
+
+    /**
+     * Complete the write: force the file to disk, close it, and rename it.
+     *
+     * Return the time spent forcing the file and its directory to disk, in
+     * nanoseconds.
+     */
+    public long commit()
+            throws FileException
+    {
+        long nanos = 0;
+        try {
+            trim();
+            if ( myDurability != Durability.NONE ) {
+                long start = System.nanoTime();
+                myChannel.force(myDurability == Durability.FULL);
+                nanos += System.nanoTime() - start;
+            }
+            if ( myHandle != null ) {
+                myCommitted = true;
+                myCache.release(myHandle, true);
+                return nanos;
+            }
+            myChannel.close();
+            if ( myTemp != null ) {
+                // the files open on the previous target would not see the new content
+                HandleCache.invalidateAll(myTarget.toString());
+                Files.move(myTemp, myTarget, StandardCopyOption.ATOMIC_MOVE);
+                myTemp = null;
+                if ( myDurability != Durability.NONE ) {
+                    long start = System.nanoTime();
+                    syncDir(myTarget.getParent());
+                    nanos += System.nanoTime() - start;
+                }
+            }
+            myCommitted = true;
+            return nanos;
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error completing the write of the file: " + myFile, ex);
+        }
+    }
+
+    /**
+     * Close the file, and if the write has not been committed, remove the temporary file.
+     */
+    @Override
+    public void close()
+            throws FileException
+    {
+        if ( myCommitted ) {
+            return;
+        }
+        myCommitted = true;
+        if ( myHandle != null ) {
+            // the content written so far is unknown, do not reuse the handle
+            myCache.release(myHandle, false);
+            return;
+        }
+        try {
+            try {
+                if ( myTemp == null ) {
+                    trim();
+                }
+            }
+            finally {
+                myChannel.close();
+            }
+            if ( myTemp != null ) {
+                Files.deleteIfExists(myTemp);
+            }
+        }
+        catch ( IOException ex ) {
+            throw FileException.ioError("Error aborting the write of the file: " + myFile, ex);
+        }
+    }
+
+    /**
+     * Truncate a preallocated file to the content written.
+     */
+    private void trim()
+            throws IOException
+    {
+        if ( myPreallocated ) {
+            myChannel.truncate(myChannel.position());
+            myPreallocated = false;
+        }
+    }
+
+    /**
+     * Copy the POSIX permissions, owner and group of {@code from} onto {@code to}.
+     *
+     * Nothing is done on a file system without POSIX attributes.  The owner
+     * and the group are copied on a best effort basis, as changing them
+     * usually requires privileges.
+     */
+    private static void copyAttributes(Path from, Path to)
+            throws IOException
+    {
+        PosixFileAttributeView view = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if ( view == null ) {
+            return;
+        }
+        PosixFileAttributes attrs = Files.readAttributes(from, PosixFileAttributes.class);
+        view.setPermissions(attrs.permissions());
+        try {
+            if ( ! attrs.group().equals(Files.readAttributes(to, PosixFileAttributes.class).group()) ) {
+                view.setGroup(attrs.group());
+            }
+            if ( ! attrs.owner().equals(Files.getOwner(to)) ) {
+                view.setOwner(attrs.owner());
+            }
+        }
+        catch ( IOException ex ) {
+            // not allowed to change them, the file gets the owner and group of the writer
+        }
+    }
+
+    /**
+     * Force a directory to disk, so a file just renamed in it survives a crash.
+     */
+    private static void syncDir(Path dir)
+            throws IOException
+    {
+        FileChannel ch;
+        try {
+            ch = FileChannel.open(dir, StandardOpenOption.READ);
+        }
+        catch ( IOException ex ) {
+            // some systems (e.g. Windows) cannot open a directory, nothing more can be done there
+            return;
+        }
+        try {
+            ch.force(true);
+        }
+        finally {
+            ch.close();
+        }
+    }
+
+    /**
+     * A view on the channel, which does not close it.
+     */
+    private class View
+            implements WritableByteChannel
+    {
+        @Override
+        public int write(ByteBuffer src)
+                throws IOException
+        {
+            return myChannel.write(src);
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return myChannel.isOpen();
+        }
+
+        @Override
+        public void close()
+        {
+            // the file is closed by the target
+        }
+    }
+
+    /** The extension of the temporary files, in atomic mode. */
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private final String myFile;
+    private final FileChannel myChannel;
+    private final WritableByteChannel myView = new View();
+    /** The temporary file to rename, in atomic mode, or null. */
+    private Path myTemp;
+    private final Path myTarget;
+    private final Durability myDurability;
+    /** The cache the file is from, if any, and its handle. */
+    private final HandleCache myCache;
+    private final HandleCache.Handle myHandle;
+    private boolean myCommitted = false;
+    /** Whether the file has been extended beyond the content written. */
+    private boolean myPreallocated = false;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
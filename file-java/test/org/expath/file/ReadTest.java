@@ -10,10 +10,30 @@
 
 package org.expath.file;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -61,6 +81,62 @@ public class ReadTest
                 "Reading the binary file with an offset and a length");
     }
 
+    @Test
+    public void readBinary_mappedAll()
+            throws Exception
+    {
+        String file = READ_01.getAbsolutePath();
+        Read sut = new Read(0);
+        byte[] result = sut.readBinary(file);
+        byte[] expect = { 0b0, 0b1, 0b10, 0b11, 0b100, 0b101, 0b110, 0b111 };
+        assertEquals(result, expect, "Reading the binary file through a mapping");
+    }
+
+    @Test
+    public void readBinary_mappedChunk()
+            throws Exception
+    {
+        String file = READ_01.getAbsolutePath();
+        Read sut = new Read(0);
+        byte[] result = sut.readBinary(file, 2, 4);
+        byte[] expect = { 0b10, 0b11, 0b100, 0b101 };
+        assertEquals(result, expect,
+                "Reading the binary file with an offset and a length through a mapping");
+    }
+
+    @Test(expectedExceptions = FileException.class)
+    public void readBinary_mappedPastEnd()
+            throws Exception
+    {
+        String file = READ_01.getAbsolutePath();
+        Read sut = new Read(0);
+        sut.readBinary(file, 6, 4);
+    }
+
+    @Test(expectedExceptions = FileException.class)
+    public void readBinary_offsetPastEnd()
+            throws Exception
+    {
+        String file = READ_01.getAbsolutePath();
+        Read sut = new Read();
+        sut.readBinary(file, 9);
+    }
+
+    @Test
+    public void openBinary_severalRanges()
+            throws Exception
+    {
+        String file = READ_01.getAbsolutePath();
+        Read sut = new Read();
+        try ( BinaryReader in = sut.openBinary(file) ) {
+            byte[] expect_1 = { 0b110, 0b111 };
+            assertEquals(in.read(6, 2), expect_1, "Reading the last range");
+            byte[] expect_2 = { 0b0, 0b1, 0b10 };
+            assertEquals(in.read(0, 3), expect_2, "Reading the first range");
+            assertEquals(in.read(8), new byte[0], "Reading from the end");
+        }
+    }
+
     // TODO: Add tests with encoding.
     @Test
     public void readText_simple()
@@ -73,6 +149,45 @@ public class ReadTest
                 "The content of the text file after writing text");
     }
 
+    @Test
+    public void readText_encoding()
+            throws Exception
+    {
+        File f = new File(READ, "utf-16.txt");
+        Files.write(f.toPath(), "Grüße, 世界.\n".getBytes(StandardCharsets.UTF_16));
+        Read sut = new Read();
+        String result = sut.readText(f.getAbsolutePath(), "UTF-16");
+        assertEquals(result, "Grüße, 世界.\n", "Reading a text file in UTF-16");
+    }
+
+    @Test
+    public void readText_severalChunks()
+            throws Exception
+    {
+        // multi-byte chars, so some of them span the chunk boundaries
+        StringBuilder buf = new StringBuilder();
+        for ( int i = 0; i < 50000; ++i ) {
+            buf.append("é世").append(i).append('\n');
+        }
+        String expected = buf.toString();
+        File f = new File(READ, "large.txt");
+        Files.write(f.toPath(), expected.getBytes(StandardCharsets.UTF_8));
+        Read sut = new Read();
+        String result = sut.readText(f.getAbsolutePath());
+        assertEquals(result, expected, "Reading a text file larger than one chunk");
+    }
+
+    @Test(expectedExceptions = FileException.class)
+    public void readText_malformed()
+            throws Exception
+    {
+        File f = new File(READ, "malformed.txt");
+        byte[] bytes = { 'a', (byte) 0xC3, 'b' };
+        Files.write(f.toPath(), bytes);
+        Read sut = new Read();
+        sut.readText(f.getAbsolutePath());
+    }
+
     // TODO: Add tests with encoding.
     @Test
     public void readTextLines_simple()
@@ -88,6 +203,516 @@ public class ReadTest
         assertEquals(result, expected, "Reading the text lines");
     }
 
+    @Test
+    public void readText_asciiThenNot()
+            throws Exception
+    {
+        StringBuilder buf = new StringBuilder();
+        for ( int i = 0; i < 20000; ++i ) {
+            buf.append("line ").append(i).append('\n');
+        }
+        buf.append("Grüße\n");
+        String expected = buf.toString();
+        File f = new File(READ, "ascii-then-not.txt");
+        Files.write(f.toPath(), expected.getBytes(StandardCharsets.UTF_8));
+        Read sut = new Read();
+        String result = sut.readText(f.getAbsolutePath());
+        assertEquals(result, expected, "Reading ASCII text followed by non-ASCII text");
+    }
+
+    @Test
+    public void readTextLines_separators()
+            throws Exception
+    {
+        // ASCII lines with all kinds of separators, some of them spanning the
+        // buffer boundaries, a line longer than the buffer, then non-ASCII
+        StringBuilder buf = new StringBuilder();
+        String[] seps = { "\n", "\r", "\r\n", "\n\n", "\r\r\n" };
+        for ( int i = 0; i < 30000; ++i ) {
+            buf.append("l").append(i).append(seps[i % seps.length]);
+        }
+        for ( int i = 0; i < 100000; ++i ) {
+            buf.append('x');
+        }
+        buf.append("\r\n");
+        for ( int i = 0; i < 1000; ++i ) {
+            buf.append("é").append(i).append(seps[i % seps.length]);
+        }
+        buf.append("no newline at the end");
+        String content = buf.toString();
+        File f = new File(READ, "separators.txt");
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        List<String> expected = new ArrayList<>();
+        try ( BufferedReader in = new BufferedReader(new StringReader(content)) ) {
+            String line;
+            while ( (line = in.readLine()) != null ) {
+                expected.add(line);
+            }
+        }
+        Read sut = new Read();
+        List<String> result = sut.readTextLines(f.getAbsolutePath());
+        assertEquals(result, expected, "Reading lines with all kinds of separators");
+    }
+
+    @Test
+    public void readTextLines_parallel()
+            throws Exception
+    {
+        StringBuilder buf = new StringBuilder();
+        String[] seps = { "\n", "\r", "\r\n" };
+        for ( int i = 0; i < 300000; ++i ) {
+            buf.append(i % 100 == 0 ? "é" : "l").append(i).append(seps[i % seps.length]);
+        }
+        String content = buf.toString();
+        File f = new File(READ, "parallel.txt");
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        Read sut = new Read();
+        List<String> expected = sut.readTextLines(f.getAbsolutePath());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> result = sut.readTextLines(f.getAbsolutePath(), StandardCharsets.UTF_8, pool);
+            assertEquals(result, expected, "Reading lines in parallel");
+            assertEquals(result.size(), 300000, "Number of lines");
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void readTextLines_range()
+            throws Exception
+    {
+        StringBuilder buf = new StringBuilder();
+        String[] seps = { "\n", "\r", "\r\n" };
+        for ( int i = 0; i < 5000; ++i ) {
+            buf.append(i % 7 == 0 ? "" : "l" + i).append(seps[i % seps.length]);
+        }
+        File f = new File(READ, "range.txt");
+        Files.write(f.toPath(), buf.toString().getBytes(StandardCharsets.UTF_8));
+        String file = f.getAbsolutePath();
+        Read sut = new Read();
+        List<String> all = sut.readTextLines(file);
+        assertEquals(sut.getLineIndex(file).getLineCount(), all.size(), "Number of lines");
+        long[][] ranges = { { 0, 10 }, { 1023, 3 }, { 2050, 1000 }, { 4990, 100 } };
+        for ( long[] r : ranges ) {
+            int from = (int) r[0];
+            int to = (int) Math.min(r[0] + r[1], all.size());
+            List<String> result = sut.readTextLines(file, StandardCharsets.UTF_8, r[0], r[1]);
+            assertEquals(result, all.subList(from, to), "Lines from " + from);
+        }
+        assertEquals(sut.readTextLines(file, StandardCharsets.UTF_8, 5000, 1).size(), 0, "Past the last line");
+    }
+
+    @Test
+    public void getLineIndex_sidecar()
+            throws Exception
+    {
+        File f = new File(READ, "sidecar.txt");
+        Files.write(f.toPath(), "a\nb\nc".getBytes(StandardCharsets.UTF_8));
+        File sidecar = new File(f.getPath() + LineIndex.SIDECAR_EXTENSION);
+        Read sut = new Read();
+        sut.setLineIndexSidecar(true);
+        assertEquals(sut.getLineIndex(f.getAbsolutePath()).getLineCount(), 3, "Number of lines");
+        assertTrue(sidecar.isFile(), "The sidecar index has been saved");
+        LineIndex loaded = LineIndex.load(sidecar, f);
+        assertEquals(loaded.getLineCount(), 3, "Number of lines in the sidecar index");
+        assertEquals(loaded.getSize(), f.length(), "Size of the indexed file");
+    }
+
+    @Test
+    public void readText_gzip()
+            throws Exception
+    {
+        File gz = new File(READ, "gzip.txt.gz");
+        try ( OutputStream out = new GZIPOutputStream(new FileOutputStream(gz)) ) {
+            out.write(bytes("First line.\r\nSecond line.\nThird line."));
+        }
+        String file = gz.getAbsolutePath();
+        Read sut = new Read();
+        sut.setCompression(Compression.DETECT);
+        assertEquals(sut.readText(file), "First line.\r\nSecond line.\nThird line.", "Reading gzipped text");
+        assertEquals(sut.readTextLines(file), Arrays.asList("First line.", "Second line.", "Third line."),
+                "Reading gzipped lines");
+        assertEquals(sut.readTextLines(file, StandardCharsets.UTF_8, 1, 1), Arrays.asList("Second line."),
+                "Reading a range of gzipped lines");
+        assertEquals(sut.readText(READ_03.getAbsolutePath()), "First line.\nSecond line.\nThird line.\n",
+                "Reading plain text with detection");
+    }
+
+    @Test
+    public void readText_gzipForgedTrailer()
+            throws Exception
+    {
+        File gz = new File(READ, "forged.txt.gz");
+        try ( OutputStream out = new GZIPOutputStream(new FileOutputStream(gz)) ) {
+            out.write(bytes("Some text."));
+        }
+        // claim an uncompressed size of almost 4 GiB
+        byte[] forged = Files.readAllBytes(gz.toPath());
+        Arrays.fill(forged, forged.length - 4, forged.length, (byte) 0xFF);
+        Files.write(gz.toPath(), forged);
+        Read sut = new Read();
+        sut.setCompression(Compression.GZIP);
+        try {
+            sut.readText(gz.getAbsolutePath());
+            fail("The trailer does not match the content, it must raise an error");
+        }
+        catch ( FileException ex ) {
+            assertEquals(ex.getType(), FileException.Type.IO_ERROR, "The error type");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void readText_tinyBuffers()
+            throws Exception
+    {
+        File f = new File(READ, "tiny-buffers.txt");
+        String text = "Caf\u00e9 cr\u00e8me, \u20ac 2.";
+        Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        BufferPool original = BufferPool.getDefault();
+        BufferPool.setDefault(new BufferPool(1, 1));
+        try {
+            assertEquals(new Read().readText(f.getAbsolutePath()), text, "The text, decoded with 1-byte buffers");
+        }
+        finally {
+            BufferPool.setDefault(original);
+        }
+    }
+
+    @Test
+    public void readTexts_batch()
+            throws Exception
+    {
+        List<String> files = new ArrayList<>();
+        for ( int i = 0; i < 20; ++i ) {
+            files.add((i % 2 == 0 ? READ_03 : READ_02).getAbsolutePath());
+        }
+        Read sut = new Read();
+        sut.setBatchParallelism(4);
+        List<String> texts = sut.readTexts(files, StandardCharsets.UTF_8);
+        assertEquals(texts.size(), files.size(), "Number of texts");
+        for ( int i = 0; i < files.size(); ++i ) {
+            assertEquals(texts.get(i), sut.readText(files.get(i)), "Text of the file " + i);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void readTexts_busyExecutor()
+            throws Exception
+    {
+        List<String> files = new ArrayList<>();
+        for ( int i = 0; i < 10; ++i ) {
+            files.add(READ_03.getAbsolutePath());
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            // the only thread of the executor is busy, so the helpers never start
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    }
+                    catch ( InterruptedException ex ) {
+                        // just stop
+                    }
+                }
+            });
+            Read sut = new Read();
+            sut.setBatchParallelism(4);
+            sut.setBatchExecutor(executor);
+            List<String> texts = sut.readTexts(files, StandardCharsets.UTF_8);
+            assertEquals(texts.size(), files.size(), "All files read by the calling thread");
+            assertEquals(texts.get(9), sut.readText(files.get(9)), "Text of the last file");
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void readTexts_errors()
+            throws Exception
+    {
+        List<String> files = Arrays.asList(
+                READ_03.getAbsolutePath(),
+                new File(READ, "no-such-file").getAbsolutePath(),
+                READ_02.getAbsolutePath());
+        Read sut = new Read();
+        try {
+            sut.readTexts(files, StandardCharsets.UTF_8);
+            fail("The batch must fail fast");
+        }
+        catch ( FileException ex ) {
+            assertEquals(ex.getType(), FileException.Type.NOT_FOUND, "The type of the error");
+        }
+        List<BatchResult<String>> results = sut.tryReadTexts(files, StandardCharsets.UTF_8);
+        assertTrue(results.get(0).isSuccess(), "The first file is read");
+        assertEquals(results.get(1).getError().getType(), FileException.Type.NOT_FOUND, "The second file is missing");
+        assertEquals(results.get(2).getValue(), sut.readText(files.get(2)), "The third file is read");
+    }
+
+    @Test
+    public void readBinaryBase64_sizes()
+            throws Exception
+    {
+        Read sut = new Read();
+        // the test vectors from RFC 4648
+        String[][] vectors = {
+            { "", "" }, { "f", "Zg==" }, { "fo", "Zm8=" }, { "foo", "Zm9v" },
+            { "foob", "Zm9vYg==" }, { "fooba", "Zm9vYmE=" }, { "foobar", "Zm9vYmFy" }
+        };
+        for ( String[] v : vectors ) {
+            File f = new File(READ, "base64-" + v[0].length() + ".bin");
+            Files.write(f.toPath(), v[0].getBytes(StandardCharsets.US_ASCII));
+            assertEquals(sut.readBinaryBase64(f.getAbsolutePath()), v[1], "Base64 of '" + v[0] + "'");
+        }
+        // several chunks: 3 zero bytes are encoded as "AAAA"
+        File f = new File(READ, "base64-large.bin");
+        Files.write(f.toPath(), new byte[300000]);
+        String res = sut.readBinaryBase64(f.getAbsolutePath());
+        assertEquals(res.length(), 400000, "Length of the base64 of a large file");
+        assertEquals(res.replace("A", ""), "", "Base64 of zero bytes");
+    }
+
+    @Test
+    public void checksum_knownValues()
+            throws Exception
+    {
+        File f = new File(READ, "checksum.txt");
+        Files.write(f.toPath(), "123456789".getBytes(StandardCharsets.US_ASCII));
+        File abc = new File(READ, "checksum-abc.txt");
+        Files.write(abc.toPath(), "abc".getBytes(StandardCharsets.US_ASCII));
+        Checksum sut = new Checksum();
+        assertEquals(sut.checksumHex(f.getAbsolutePath(), Checksum.Algorithm.CRC32C), "e3069283", "CRC32C");
+        assertEquals(sut.checksumHex(abc.getAbsolutePath(), Checksum.Algorithm.MD5),
+                "900150983cd24fb0d6963f7d28e17f72", "MD5");
+        assertEquals(sut.checksumHex(abc.getAbsolutePath(), Checksum.Algorithm.forName("sha256")),
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", "SHA-256");
+    }
+
+    @Test
+    public void checksum_unknownAlgorithm()
+            throws Exception
+    {
+        File f = new File(READ, "checksum-unknown.txt");
+        Files.write(f.toPath(), "abc".getBytes(StandardCharsets.US_ASCII));
+        try {
+            new Checksum().checksum(f.getAbsolutePath(), "SHA-999");
+            fail("The algorithm does not exist, it must raise an error");
+        }
+        catch ( FileException ex ) {
+            assertEquals(ex.getType(), FileException.Type.UNKNOWN_ALGORITHM, "The error type");
+        }
+    }
+
+    @Test
+    public void checksum_parallelCrc32c()
+            throws Exception
+    {
+        byte[] bytes = new byte[5 * 1024 * 1024 + 17];
+        for ( int i = 0; i < bytes.length; ++i ) {
+            bytes[i] = (byte) (i * 31 + (i >>> 11));
+        }
+        File f = new File(READ, "checksum-large.bin");
+        Files.write(f.toPath(), bytes);
+        Checksum sut = new Checksum();
+        sut.setParallelThreshold(Long.MAX_VALUE);
+        int sequential = sut.crc32c(f.getAbsolutePath());
+        assertEquals(sequential, Checksum.updateCrc32c(0, bytes, 0, bytes.length), "Sequential CRC32C");
+        sut.setParallelPool(new ForkJoinPool(4));
+        sut.setParallelThreshold(0);
+        assertEquals(sut.crc32c(f.getAbsolutePath()), sequential, "Parallel CRC32C");
+    }
+
+    @Test
+    public void readBinaryLazy_changed()
+            throws Exception
+    {
+        File f = new File(READ, "lazy.bin");
+        Files.write(f.toPath(), "abc".getBytes(StandardCharsets.US_ASCII));
+        Read sut = new Read();
+        LazyBinary lazy = sut.readBinaryLazy(f.getAbsolutePath());
+        assertEquals(lazy.getSize(), 3, "Size from the metadata");
+        assertTrue(! lazy.isLoaded(), "Not read yet");
+        Files.write(f.toPath(), "abcdef".getBytes(StandardCharsets.US_ASCII));
+        try {
+            lazy.getBytes();
+            fail("The file has changed, it must raise an error");
+        }
+        catch ( FileException ex ) {
+            assertEquals(ex.getType(), FileException.Type.IO_ERROR, "The error type");
+        }
+        lazy = sut.readBinaryLazy(f.getAbsolutePath());
+        assertEquals(new String(lazy.getBytes(), StandardCharsets.US_ASCII), "abcdef", "The content");
+        assertTrue(lazy.isLoaded(), "Read now");
+    }
+
+    @Test
+    public void bufferPool_reuse()
+            throws Exception
+    {
+        BufferPool sut = new BufferPool(16, 1);
+        ByteBuffer first = sut.acquireHeap();
+        ByteBuffer second = sut.acquireHeap();
+        ByteBuffer third = sut.acquireHeap();
+        first.put((byte) 1);
+        sut.release(first);
+        sut.release(second);
+        sut.release(third);
+        sut.release(ByteBuffer.allocate(32));
+        ByteBuffer again = sut.acquireHeap();
+        assertTrue(again == first, "The buffer of the thread is reused");
+        assertEquals(again.position(), 0, "A reused buffer is cleared");
+        assertTrue(sut.acquireHeap() == second, "A shared buffer is reused");
+        ByteBuffer fresh = sut.acquireHeap();
+        assertTrue(fresh != third && fresh.capacity() == 16, "Only one shared buffer is retained");
+        assertTrue(sut.acquireDirect().isDirect(), "A direct buffer");
+    }
+
+    @Test
+    public void asyncRead_simple()
+            throws Exception
+    {
+        AsyncRead sut = new AsyncRead();
+        Future<byte[]> binary = sut.readBinary(READ_01.getAbsolutePath());
+        Future<byte[]> range = sut.readBinary(READ_01.getAbsolutePath(), 1, 2);
+        Future<String> text = sut.readText(READ_03.getAbsolutePath());
+        assertEquals(binary.get(), new Read().readBinary(READ_01.getAbsolutePath()), "Reading the binary file");
+        assertEquals(range.get(), new Read().readBinary(READ_01.getAbsolutePath(), 1, 2), "Reading a range");
+        assertEquals(text.get(), "First line.\nSecond line.\nThird line.\n", "Reading the text file");
+    }
+
+    @Test
+    public void asyncRead_errors()
+            throws Exception
+    {
+        AsyncRead sut = new AsyncRead();
+        assertAsyncError(sut.readBinary(new File(READ, "no-such-file").getAbsolutePath()),
+                FileException.Type.NOT_FOUND);
+        assertAsyncError(sut.readBinary(READ_01.getAbsolutePath(), 1, 1000),
+                FileException.Type.OUT_OF_RANGE);
+        assertAsyncError(sut.readText(READ_03.getAbsolutePath(), "no-such-encoding"),
+                FileException.Type.UNKNOWN_ENCODING);
+    }
+
+    private static void assertAsyncError(Future<?> future, FileException.Type type)
+            throws Exception
+    {
+        try {
+            future.get();
+            fail("An error is expected: " + type);
+        }
+        catch ( ExecutionException ex ) {
+            FileException cause = (FileException) ex.getCause();
+            assertEquals(cause.getType(), type, "The type of the error");
+        }
+    }
+
+    @Test
+    public void tail_appended()
+            throws Exception
+    {
+        File f = new File(READ, "tail.log");
+        Path p = f.toPath();
+        String file = f.getAbsolutePath();
+        Files.write(p, bytes("one\ntw"));
+        try ( Tail sut = new Tail() ) {
+            assertEquals(sut.readTextLines(file), Arrays.asList("one"), "The first complete line");
+            Files.write(p, bytes("o\r"), StandardOpenOption.APPEND);
+            assertEquals(sut.readTextLines(file).size(), 0, "A CR alone might be followed by a LF");
+            Files.write(p, bytes("\nthree\n"), StandardOpenOption.APPEND);
+            assertEquals(sut.readTextLines(file), Arrays.asList("two", "three"), "The appended lines");
+            assertEquals(sut.readTextLines(file).size(), 0, "Nothing appended");
+            // truncated
+            Files.write(p, bytes("four\n"));
+            assertEquals(sut.readTextLines(file), Arrays.asList("four"), "After truncation");
+            // rotated
+            Files.write(p, bytes("five"), StandardOpenOption.APPEND);
+            Files.move(p, new File(READ, "tail.log.1").toPath());
+            Files.write(p, bytes("six\n"));
+            assertEquals(sut.readTextLines(file), Arrays.asList("five", "six"), "After rotation");
+        }
+    }
+
+    @Test
+    public void tail_binary()
+            throws Exception
+    {
+        File f = new File(READ, "tail.bin");
+        Path p = f.toPath();
+        String file = f.getAbsolutePath();
+        Files.write(p, new byte[] { 1, 2, 3 });
+        try ( Tail sut = new Tail() ) {
+            assertEquals(sut.readBinary(file), new byte[] { 1, 2, 3 }, "The whole file");
+            Files.write(p, new byte[] { 4, 5 }, StandardOpenOption.APPEND);
+            assertEquals(sut.readBinary(file), new byte[] { 4, 5 }, "The appended bytes");
+            sut.reset(file);
+            assertEquals(sut.readBinary(file).length, 5, "The whole file after reset");
+        }
+    }
+
+    private static byte[] bytes(String s)
+    {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void openTextLines_simple()
+            throws Exception
+    {
+        String file = READ_03.getAbsolutePath();
+        Read sut = new Read();
+        try ( LineReader in = sut.openTextLines(file) ) {
+            assertEquals(in.readLine(), "First line.", "Reading the first line");
+            assertEquals(in.readLine(), "Second line.", "Reading the second line");
+            assertEquals(in.readLine(), "Third line.", "Reading the third line");
+            assertNull(in.readLine(), "Reading past the last line");
+        }
+    }
+
+    @Test
+    public void readText_cached()
+            throws Exception
+    {
+        File f = new File(READ, "cached.txt");
+        Files.write(f.toPath(), "First.".getBytes(StandardCharsets.UTF_8));
+        Read sut = new Read();
+        ContentCache cache = new ContentCache(1024);
+        sut.setContentCache(cache);
+        assertEquals(sut.readText(f.getAbsolutePath()), "First.", "First read");
+        assertEquals(sut.readText(f.getAbsolutePath()), "First.", "Second read");
+        assertEquals(cache.getHits(), 1, "Hits after the second read");
+        assertEquals(cache.getMisses(), 1, "Misses after the second read");
+        // a new size means a new key
+        Files.write(f.toPath(), "Second.".getBytes(StandardCharsets.UTF_8));
+        assertEquals(sut.readText(f.getAbsolutePath()), "Second.", "Read after a change");
+        assertEquals(cache.getMisses(), 2, "Misses after the change");
+    }
+
+    @Test
+    public void readBinary_cacheBudget()
+            throws Exception
+    {
+        String file = READ_01.getAbsolutePath();
+        Read sut = new Read();
+        // room for one 8-byte file only
+        ContentCache cache = new ContentCache(12);
+        sut.setContentCache(cache);
+        sut.readBinary(file);
+        sut.readText(READ_02.getAbsolutePath());
+        assertEquals(cache.getEntryCount(), 1, "The text entry is too large on its own");
+        byte[] result = sut.readBinary(file);
+        result[0] = 42;
+        byte[] expect = { 0b0, 0b1, 0b10, 0b11, 0b100, 0b101, 0b110, 0b111 };
+        assertEquals(sut.readBinary(file), expect, "Cached content is not modified by callers");
+        assertEquals(cache.getHits(), 2, "Hits on the binary content");
+        assertEquals(cache.getWeight(), 8, "Weight of the cache");
+    }
+
     // ----------------------------------------------------------------------
     //   Test setup
     // ----------------------------------------------------------------------
@@ -11,9 +11,17 @@
 package org.expath.file;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Future;
 import static org.expath.file.TestTools.assertFileEquals;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 import org.expath.tools.model.Element;
 import org.expath.tools.model.Sequence;
 import org.expath.tools.model.dom.DomElement;
@@ -100,6 +108,419 @@ public class WriteTest
                 "The content of the text file after writing text lines");
     }
 
+    @Test
+    public void writeText_encoding()
+            throws Exception
+    {
+        File f = new File(WRITE, "seventh.txt");
+        String file = f.getAbsolutePath();
+        Write sut = new Write();
+        sut.writeText(file, "caf\u00e9 \u20ac", "ISO-8859-1");
+        byte[] expect = { 'c', 'a', 'f', (byte) 0xE9, ' ', '?' };
+        assertFileEquals(f, expect,
+                "Unmappable chars are replaced, as by String.getBytes()");
+        sut.writeText(file, "caf\u00e9 \u20ac", "UTF-16LE");
+        assertEquals(new Read().readText(file, "UTF-16LE"), "caf\u00e9 \u20ac",
+                "The content of the text file after writing UTF-16");
+    }
+
+    @Test
+    public void asyncWrite_simple()
+            throws Exception
+    {
+        File f = new File(WRITE, "eighth.txt");
+        String file = f.getAbsolutePath();
+        AsyncWrite sut = new AsyncWrite();
+        sut.writeText(file, "First line.\n", "UTF-8").get();
+        sut.appendBinary(file, "Second line.\n".getBytes("UTF-8")).get();
+        assertFileEquals(f, "First line.\nSecond line.\n",
+                "The content of the text file after async writes");
+    }
+
+    @Test
+    public void asyncWrite_concurrentAppends()
+            throws Exception
+    {
+        File f = new File(WRITE, "twenty-first.txt");
+        String file = f.getAbsolutePath();
+        AsyncWrite sut = new AsyncWrite();
+        sut.writeText(file, "", "UTF-8").get();
+        List<Future<Void>> appends = new ArrayList<>();
+        for ( int i = 0; i < 200; ++i ) {
+            appends.add(sut.appendBinary(file, new byte[] { (byte) ('a' + i % 26) }));
+        }
+        for ( Future<Void> a : appends ) {
+            a.get();
+        }
+        byte[] bytes = Files.readAllBytes(f.toPath());
+        assertEquals(bytes.length, 200, "No append overwrote another one");
+        int[] counts = new int[26];
+        for ( byte b : bytes ) {
+            ++counts[b - 'a'];
+        }
+        assertEquals(counts[0], 8, "The number of 'a' appended");
+        assertEquals(counts[25], 7, "The number of 'z' appended");
+    }
+
+    @Test
+    public void writeText_gzip()
+            throws Exception
+    {
+        File gz = new File(WRITE, "sixth.txt.gz");
+        String file = gz.getAbsolutePath();
+        Write sut = new Write();
+        sut.setCompression(Compression.DETECT);
+        sut.writeText(file, "First line.\n");
+        sut.appendText(file, "Second line.\n", "UTF-8");
+        Read read = new Read();
+        read.setCompression(Compression.GZIP);
+        assertEquals(read.readText(file), "First line.\nSecond line.\n",
+                "The content of the gzip file, with 2 members");
+    }
+
+    @Test
+    public void writeTextLines_buffered()
+            throws Exception
+    {
+        File f = new File(WRITE, "ninth.txt");
+        String file = f.getAbsolutePath();
+        List<String> lines = new ArrayList<>();
+        StringBuilder expect = new StringBuilder();
+        for ( int i = 0; i < 1000; ++i ) {
+            lines.add("Line \u00e9 " + i);
+            expect.append("Line \u00e9 ").append(i).append('\n');
+        }
+        Write sut = new Write();
+        // smaller than a line, so most lines are split over several buffers
+        sut.setBufferSize(7);
+        sut.writeTextLines(file, lines);
+        sut.appendText(file, "Last \u20ac");
+        expect.append("Last \u20ac");
+        assertEquals(new Read().readText(file, "UTF-8"), expect.toString(),
+                "The content of the text file, encoded in UTF-8 by default");
+    }
+
+    @Test
+    public void writeText_encodingStreamed()
+            throws Exception
+    {
+        File f = new File(WRITE, "tenth.txt");
+        String file = f.getAbsolutePath();
+        StringBuilder big = new StringBuilder();
+        while ( big.length() < 300000 ) {
+            // several buffers, with multi-byte chars and surrogate pairs across their limits
+            big.append("caf\u00e9 \u20ac \ud83d\ude00 ");
+        }
+        Write sut = new Write();
+        sut.writeText(file, big.toString(), "UTF-8");
+        assertEquals(new Read().readText(file, "UTF-8"), big.toString(),
+                "The content of a large text file, encoded by chunks");
+        List<String> lines = new ArrayList<>();
+        lines.add("First line.");
+        lines.add("Second line.");
+        sut.writeTextLines(file, lines, "UTF-16");
+        sut.appendTextLines(file, lines, "UTF-8");
+        byte[] bytes = Files.readAllBytes(f.toPath());
+        assertEquals(new String(bytes, 0, 52, "UTF-16"), "First line.\nSecond line.\n",
+                "Writing lines overwrites the file, with only one byte order mark");
+        assertEquals(new String(bytes, 52, bytes.length - 52, "UTF-8"), "First line.\nSecond line.\n",
+                "The lines appended");
+    }
+
+    @Test
+    public void writeText_atomic()
+            throws Exception
+    {
+        File dir = new File(WRITE, "atomic");
+        dir.mkdir();
+        File f = new File(dir, "first.txt");
+        String file = f.getAbsolutePath();
+        Write sut = new Write();
+        sut.setAtomic(true);
+        sut.setDurability(Durability.FULL);
+        sut.writeText(file, "First line.\n");
+        sut.writeBinary(file, "Second line.\n".getBytes("UTF-8"));
+        assertFileEquals(f, "Second line.\n", "The content of the file after atomic writes");
+        assertEquals(sut.getSyncCount(), 2, "The number of writes forced to disk");
+        // an aborted write leaves the file untouched
+        try ( WriteTarget target = WriteTarget.open(file, false, true, Durability.NONE, null) ) {
+            target.write(ByteBuffer.wrap("Partial".getBytes("UTF-8")));
+        }
+        assertFileEquals(f, "Second line.\n", "The content of the file after an aborted write");
+        assertEquals(dir.list().length, 1, "No temporary file is left over");
+    }
+
+    @Test
+    public void writeText_atomicLinkAndMode()
+            throws Exception
+    {
+        File dir = new File(WRITE, "atomic-link");
+        dir.mkdir();
+        File f = new File(dir, "target.txt");
+        File link = new File(dir, "link.txt");
+        Files.write(f.toPath(), "First line.\n".getBytes("UTF-8"));
+        Files.setPosixFilePermissions(f.toPath(), PosixFilePermissions.fromString("rw-r-----"));
+        Files.createSymbolicLink(link.toPath(), f.toPath());
+        Write sut = new Write();
+        sut.setAtomic(true);
+        sut.writeText(link.getAbsolutePath(), "Second line.\n");
+        assertTrue(Files.isSymbolicLink(link.toPath()), "The link is kept");
+        assertEquals(new Read().readText(f.getAbsolutePath()), "Second line.\n", "The content of the file linked to");
+        assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(f.toPath())), "rw-r-----",
+                "The permissions of the file");
+        assertEquals(dir.list().length, 2, "No temporary file is left over");
+    }
+
+    @Test
+    public void appendTextLines_coordinated()
+            throws Exception
+    {
+        File f = new File(WRITE, "eleventh.txt");
+        final String file = f.getAbsolutePath();
+        final Write sut = new Write();
+        sut.setAppendCoordinator(new AppendCoordinator());
+        sut.writeText(file, "");
+        final int threads = 8;
+        final int records = 200;
+        List<Thread> workers = new ArrayList<>();
+        for ( int t = 0; t < threads; ++t ) {
+            final int thread = t;
+            workers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for ( int i = 0; i < records; ++i ) {
+                            List<String> lines = new ArrayList<>();
+                            lines.add(thread + " " + i + " a");
+                            lines.add(thread + " " + i + " b");
+                            sut.appendTextLines(file, lines, "UTF-8");
+                        }
+                    }
+                    catch ( FileException ex ) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+        }
+        for ( Thread w : workers ) {
+            w.start();
+        }
+        for ( Thread w : workers ) {
+            w.join();
+        }
+        List<String> lines = new Read().readTextLines(file);
+        assertEquals(lines.size(), threads * records * 2, "The number of lines");
+        int[] next = new int[threads];
+        for ( int i = 0; i < lines.size(); i += 2 ) {
+            String[] first = lines.get(i).split(" ");
+            int thread = Integer.parseInt(first[0]);
+            assertEquals(first[1], Integer.toString(next[thread]), "The records of a thread are in order");
+            assertEquals(first[2], "a", "A record starts with its first line");
+            assertEquals(lines.get(i + 1), thread + " " + next[thread] + " b", "A record is whole");
+            ++next[thread];
+        }
+    }
+
+    @Test
+    public void appendBinary_coordinatedEmpty()
+            throws Exception
+    {
+        File f = new File(WRITE, "twenty-second.bin");
+        final String file = f.getAbsolutePath();
+        final Write sut = new Write();
+        sut.setAppendCoordinator(new AppendCoordinator());
+        sut.writeBinary(file, new byte[0]);
+        final int threads = 8;
+        final int records = 1000;
+        List<Thread> workers = new ArrayList<>();
+        for ( int t = 0; t < threads; ++t ) {
+            // half of the threads append empty records, possibly last in a batch
+            final byte[] record = new byte[t % 2 == 0 ? 2 : 0];
+            workers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for ( int i = 0; i < records; ++i ) {
+                            sut.appendBinary(file, record);
+                        }
+                    }
+                    catch ( FileException ex ) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+        }
+        for ( Thread w : workers ) {
+            w.start();
+        }
+        for ( Thread w : workers ) {
+            w.join();
+        }
+        assertEquals(f.length(), threads / 2 * records * 2L, "No record has been lost");
+    }
+
+    @Test
+    public void appendText_handleCache()
+            throws Exception
+    {
+        File f = new File(WRITE, "twelfth.txt");
+        String file = f.getAbsolutePath();
+        try ( HandleCache cache = new HandleCache(4, 60000) ) {
+            Write sut = new Write();
+            sut.setHandleCache(cache);
+            sut.writeText(file, "Overwritten.\n");
+            sut.writeText(file, "First line.\n");
+            for ( int i = 0; i < 100; ++i ) {
+                sut.appendText(file, "Line " + i + ".\n", "UTF-8");
+            }
+            assertEquals(cache.getHandleCount(), 1, "The file is kept open");
+            List<String> lines = new Read().readTextLines(file);
+            assertEquals(lines.size(), 101, "The number of lines");
+            assertEquals(lines.get(0), "First line.", "The file has been truncated");
+            assertEquals(lines.get(100), "Line 99.", "The last line");
+            // deleting the file closes it, so writing again creates a new one
+            new InputOutput().delete(file);
+            assertEquals(cache.getHandleCount(), 0, "The deleted file is closed");
+            sut.appendText(file, "New file.\n");
+            assertFileEquals(f, "New file.\n", "The content of the new file");
+            cache.flush();
+            assertEquals(cache.getHandleCount(), 0, "All files are closed");
+        }
+    }
+
+    @Test
+    public void appendText_handleCacheCopy()
+            throws Exception
+    {
+        File src = new File(WRITE, "seventeenth.txt");
+        File f = new File(WRITE, "eighteenth.txt");
+        File srcDir = new File(WRITE, "nineteenth");
+        File dir = new File(WRITE, "twentieth");
+        File nested = new File(dir, "file.txt");
+        InputOutput io = new InputOutput();
+        try ( HandleCache cache = new HandleCache(4, 60000) ) {
+            Write sut = new Write();
+            sut.setHandleCache(cache);
+            sut.writeText(src.getAbsolutePath(), "SRC");
+            sut.writeText(f.getAbsolutePath(), "a");
+            // copying over the cached file replaces it, so it must be closed
+            io.copy(src.getAbsolutePath(), f.getAbsolutePath());
+            sut.appendText(f.getAbsolutePath(), "b");
+            assertEquals(new Read().readText(f.getAbsolutePath()), "SRCb", "Appended to the copied file");
+            // same for a file replaced by a recursive copy of a directory
+            io.createDir(srcDir.getAbsolutePath());
+            io.createDir(dir.getAbsolutePath());
+            sut.writeText(new File(srcDir, "file.txt").getAbsolutePath(), "SRC");
+            sut.writeText(nested.getAbsolutePath(), "a");
+            io.copy(srcDir.getAbsolutePath(), dir.getAbsolutePath());
+            sut.appendText(nested.getAbsolutePath(), "b");
+            assertEquals(new Read().readText(nested.getAbsolutePath()), "SRCb", "Appended to the file copied in the directory");
+        }
+    }
+
+    @Test
+    public void writePatches_gathered()
+            throws Exception
+    {
+        File f = new File(WRITE, "thirteenth.txt");
+        String file = f.getAbsolutePath();
+        Write sut = new Write();
+        sut.writeText(file, "0123456789");
+        List<Patch> patches = new ArrayList<>();
+        patches.add(new Patch(8, "ij".getBytes("UTF-8")));
+        patches.add(new Patch(10, "klm".getBytes("UTF-8")));
+        patches.add(new Patch(2, "c".getBytes("UTF-8")));
+        patches.add(new Patch(3, "d".getBytes("UTF-8")));
+        sut.writePatches(file, patches);
+        assertEquals(new Read().readText(file), "01cd4567ijklm", "The sorted patches, extending the file");
+        // overlapping patches are applied in order
+        patches.clear();
+        patches.add(new Patch(0, "ABCD".getBytes("UTF-8")));
+        patches.add(new Patch(1, "x".getBytes("UTF-8")));
+        sut.writePatches(file, patches);
+        assertEquals(new Read().readText(file), "AxCD4567ijklm", "The last overlapping patch wins");
+        // nothing is written if one patch is out of range
+        patches.clear();
+        patches.add(new Patch(0, "zzz".getBytes("UTF-8")));
+        patches.add(new Patch(14, "z".getBytes("UTF-8")));
+        try {
+            sut.writePatches(file, patches);
+            fail("The offset is out of range, it must raise an error");
+        }
+        catch ( FileException ex ) {
+            assertEquals(ex.getType(), FileException.Type.OUT_OF_RANGE, "The error type");
+        }
+        assertEquals(new Read().readText(file), "AxCD4567ijklm", "The file has not changed");
+    }
+
+    @Test
+    public void writePatches_emptyAndInvalid()
+            throws Exception
+    {
+        File f = new File(WRITE, "twenty-third.bin");
+        String file = f.getAbsolutePath();
+        Write sut = new Write();
+        // an empty patch last in a run
+        List<Patch> patches = new ArrayList<>();
+        patches.add(new Patch(0, new byte[] { 1, 2 }));
+        patches.add(new Patch(2, new byte[0]));
+        sut.writePatches(file, patches);
+        assertFileEquals(f, new byte[] { 1, 2 }, "The run is written, despite its empty last patch");
+        // a negative offset does not create the file
+        File missing = new File(WRITE, "twenty-fourth.bin");
+        try {
+            sut.writeBinary(missing.getAbsolutePath(), new byte[] { 1 }, -1);
+            fail("The offset is negative, it must raise an error");
+        }
+        catch ( FileException ex ) {
+            assertEquals(ex.getType(), FileException.Type.OUT_OF_RANGE, "The error type");
+        }
+        assertEquals(missing.exists(), false, "The file has not been created");
+    }
+
+    @Test
+    public void writeSequence_buffered()
+            throws Exception
+    {
+        StringBuilder xml = new StringBuilder("<root>");
+        for ( int i = 0; i < 1000; ++i ) {
+            xml.append("<line n=\"").append(i).append("\">Line \u00e9 ").append(i).append("</line>");
+        }
+        xml.append("</root>");
+        Sequence seq = DomElement.parseString(xml.toString()).getContent();
+        File expect = new File(WRITE, "fourteenth.xml");
+        File f = new File(WRITE, "fifteenth.xml");
+        Write sut = new Write();
+        sut.write(expect.getAbsolutePath(), seq);
+        // smaller than most chunks written by the serializer
+        sut.setBufferSize(5);
+        sut.write(f.getAbsolutePath(), seq);
+        sut.append(f.getAbsolutePath(), seq);
+        byte[] once = Files.readAllBytes(expect.toPath());
+        byte[] twice = Files.readAllBytes(f.toPath());
+        assertEquals(twice.length, once.length * 2, "The size of the file, written then appended");
+        assertEquals(Arrays.copyOf(twice, once.length), once, "The content written with a tiny buffer");
+    }
+
+    @Test
+    public void writeText_sizeHint()
+            throws Exception
+    {
+        File f = new File(WRITE, "sixteenth.txt");
+        String file = f.getAbsolutePath();
+        Write sut = new Write();
+        sut.writeText(file, "caf\u00e9", "UTF-8", 1000000);
+        assertEquals(f.length(), 5, "The file is truncated to the content written");
+        assertEquals(new Read().readText(file), "caf\u00e9", "The content of the file");
+        // a hint too small is harmless
+        List<String> lines = new ArrayList<>();
+        lines.add("First line.");
+        lines.add("Second line.");
+        sut.setAtomic(true);
+        sut.writeTextLines(file, lines, "UTF-8", 3);
+        assertEquals(new Read().readTextLines(file), lines, "The lines of the file, written atomically");
+    }
+
     // ----------------------------------------------------------------------
     //   Test setup
     // ----------------------------------------------------------------------
@@ -9,8 +9,11 @@
 
 package org.expath.file.saxon;
 
+import net.sf.saxon.om.StructuredQName;
 import net.sf.saxon.trans.XPathException;
 import org.expath.file.FileException;
+import org.expath.file.Read;
+import org.expath.file.Tail;
 import org.expath.file.saxon.inout.*;
 import org.expath.file.saxon.paths.*;
 import org.expath.file.saxon.props.*;
@@ -21,6 +24,10 @@ import org.expath.tools.saxon.fun.Library;
 /**
  * The library of extension functions for Saxon, implementing EXPath File.
  *
+ * The functions of the spec are in its namespace, {@link #NS_URI}.  The
+ * functions this implementation adds to it (like {@code filex:checksum}) are
+ * in a separate namespace, {@link #EXT_NS_URI}.
+ *
  * @author Florent Georges
  * @date   2015-01-13
  */
@@ -32,6 +39,60 @@ public class EXPathFileLibrary
         super(NS_URI, NS_PREFIX);
     }
 
+    /**
+     * The {@link Read} object shared by all the `read*` functions.
+     * 
+     * Its configuration (like its memory-mapping threshold) applies to all
+     * the calls made through this library.  For instance, setting a
+     * {@link org.expath.file.ContentCache} on it shares the content of the
+     * files read by all transformations using this library.
+     */
+    public Read read()
+    {
+        return myRead;
+    }
+
+    /**
+     * The {@link org.expath.file.Write} object shared by all the `write*` and `append*` functions.
+     * 
+     * Its configuration (like its compression) applies to all the calls made
+     * through this library.
+     */
+    public org.expath.file.Write write()
+    {
+        return myWrite;
+    }
+
+    /**
+     * The {@link Tail} object shared by all the `tail*` functions.
+     * 
+     * It keeps a cursor for each file followed, for the lifetime of this
+     * library.
+     */
+    public Tail tail()
+    {
+        return myTail;
+    }
+
+    /**
+     * The {@link org.expath.file.Checksum} object used by filex:checksum.
+     * 
+     * Its configuration (like its parallel pool) applies to all the calls
+     * made through this library.
+     */
+    public org.expath.file.Checksum checksum()
+    {
+        return myChecksum;
+    }
+
+    /**
+     * The name of an extension function, in the namespace {@link #EXT_NS_URI}.
+     */
+    public static StructuredQName extension(String local)
+    {
+        return new StructuredQName(EXT_NS_PREFIX, EXT_NS_URI, local);
+    }
+
     @Override
     protected Function[] functions()
             throws ToolsException
@@ -56,8 +117,13 @@ public class EXPathFileLibrary
             new List(this),
             new Move(this),
             new ReadBinary(this),
+            new ReadBinaryBase64(this),
+            new Checksum(this),
             new ReadText(this),
+            new ReadTextBatch(this),
             new ReadTextLines(this),
+            new TailBinary(this),
+            new TailTextLines(this),
             new Write(this),
             new WriteBinary(this),
             new WriteText(this),
@@ -93,6 +159,11 @@ public class EXPathFileLibrary
                 return error(ERR_OUT_OF_RANGE, ex.getMessage(), ex);
             case UNKNOWN_ENCODING:
                 return error(ERR_UNKNOWN_ENCODING, ex.getMessage(), ex);
+            case UNKNOWN_ALGORITHM:
+                // not an error of the spec, so not in its namespace
+                XPathException err = new XPathException(ex.getMessage(), ex);
+                err.setErrorCodeQName(extension(ERR_UNKNOWN_ALGORITHM));
+                return err;
             default:
                 return error(
                         ERR_IO_ERROR,
@@ -101,16 +172,25 @@ public class EXPathFileLibrary
         }
     }
 
+    private final Read myRead = new Read();
+    private final org.expath.file.Write myWrite = new org.expath.file.Write();
+    private final Tail myTail = new Tail();
+    private final org.expath.file.Checksum myChecksum = new org.expath.file.Checksum();
+
     public static final String NS_URI    = "http://expath.org/ns/file";
     public static final String NS_PREFIX = "file";
+    /** The namespace of the extension functions, which are not part of the spec. */
+    public static final String EXT_NS_URI    = "http://expath.org/lib/files/ext";
+    public static final String EXT_NS_PREFIX = "filex";
 
-    private static final String ERR_EXISTS           = "exists";
-    private static final String ERR_IO_ERROR         = "io-error";
-    private static final String ERR_IS_DIR           = "is-dir";
-    private static final String ERR_NOT_FOUND        = "not-found";
-    private static final String ERR_NO_DIR           = "no-dir";
-    private static final String ERR_OUT_OF_RANGE     = "out-of-range";
-    private static final String ERR_UNKNOWN_ENCODING = "unknown-encoding";
+    private static final String ERR_EXISTS            = "exists";
+    private static final String ERR_IO_ERROR          = "io-error";
+    private static final String ERR_IS_DIR            = "is-dir";
+    private static final String ERR_NOT_FOUND         = "not-found";
+    private static final String ERR_NO_DIR            = "no-dir";
+    private static final String ERR_OUT_OF_RANGE      = "out-of-range";
+    private static final String ERR_UNKNOWN_ENCODING  = "unknown-encoding";
+    private static final String ERR_UNKNOWN_ALGORITHM = "unknown-algorithm";
 }
 
 
@@ -66,7 +66,7 @@ public class Append
         org.expath.tools.model.Sequence items = params.asSequence(1, false, ctxt);
         // the actual call
         try {
-            Write write = new Write();
+            Write write = myLib.write();
             if ( orig_params.length == 2 ) {
                 write.append(file, items);
             }
@@ -62,7 +62,7 @@ public class AppendBinary
         byte[] value = params.asBinary(1, false);
         // the actual call
         try {
-            Write write = new Write();
+            Write write = myLib.write();
             write.appendBinary(file, value);
             return Return.empty();
         }
@@ -64,7 +64,7 @@ public class AppendText
         String value = params.asString(1, false);
         // the actual call
         try {
-            Write write = new Write();
+            Write write = myLib.write();
             if ( orig_params.length == 2 ) {
                 write.appendText(file, value);
             }
@@ -0,0 +1,113 @@
+/****************************************************************************/
+/*  File:       LinesIterator.java                                          */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file.saxon.inout;
+
+import net.sf.saxon.om.Item;
+import net.sf.saxon.om.SequenceIterator;
+import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.value.StringValue;
+import org.expath.file.FileException;
+import org.expath.file.LineReader;
+import org.expath.file.Read;
+import org.expath.file.saxon.EXPathFileLibrary;
+
+/**
+ * Lazy iterator over the lines of a text file.
+ *
+ * Lines are read only when the query asks for the next item.  The file is
+ * released when the iterator is closed, or when it reaches the end of the file.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+class LinesIterator
+        implements SequenceIterator
+{
+    public LinesIterator(EXPathFileLibrary lib, String file, String encoding)
+            throws XPathException
+    {
+        myLib = lib;
+        myFile = file;
+        myEncoding = encoding;
+        try {
+            Read read = lib.read();
+            myIn = encoding == null
+                    ? read.openTextLines(file)
+                    : read.openTextLines(file, encoding);
+        }
+        catch ( FileException ex ) {
+            throw lib.error(ex);
+        }
+    }
+
+    @Override
+    public Item next()
+            throws XPathException
+    {
+        try {
+            String line = myIn.readLine();
+            return line == null ? null : new StringValue(line);
+        }
+        catch ( FileException ex ) {
+            throw myLib.error(ex);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try {
+            myIn.close();
+        }
+        catch ( FileException ex ) {
+            // nothing we can do, and nothing was written anyway
+        }
+    }
+
+    @Override
+    public SequenceIterator getAnother()
+            throws XPathException
+    {
+        return new LinesIterator(myLib, myFile, myEncoding);
+    }
+
+    @Override
+    public int getProperties()
+    {
+        return 0;
+    }
+
+    private final EXPathFileLibrary myLib;
+    private final String myFile;
+    private final String myEncoding;
+    private final LineReader myIn;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -63,7 +63,7 @@ public class ReadBinary
         String file = params.asString(0, false);
         // the actual call
         try {
-            Read read = new Read();
+            Read read = myLib.read();
             byte[] res;
             if ( orig_params.length == 1 ) {
                 res = read.readBinary(file);
@@ -62,7 +62,7 @@ public class ReadText
         String file = params.asString(0, false);
         // the actual call
         try {
-            Read read = new Read();
+            Read read = myLib.read();
             String res;
             if ( orig_params.length == 1 ) {
                 res = read.readText(file);
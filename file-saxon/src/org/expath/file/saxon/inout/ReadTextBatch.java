@@ -0,0 +1,133 @@
+/****************************************************************************/
+/*  File:       ReadTextBatch.java                                          */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file.saxon.inout;
+
+import java.util.ArrayList;
+import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.om.Item;
+import net.sf.saxon.om.Sequence;
+import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.type.BuiltInAtomicType;
+import net.sf.saxon.value.QNameValue;
+import net.sf.saxon.value.SequenceExtent;
+import net.sf.saxon.value.StringValue;
+import org.expath.file.BatchResult;
+import org.expath.file.FileException;
+import org.expath.file.Read;
+import org.expath.file.saxon.EXPathFileLibrary;
+import org.expath.tools.ToolsException;
+import org.expath.tools.saxon.fun.Definition;
+import org.expath.tools.saxon.fun.Function;
+import org.expath.tools.saxon.fun.Parameters;
+import org.expath.tools.saxon.fun.Return;
+import org.expath.tools.saxon.fun.Types;
+
+/**
+ * The filex:read-text-batch function (an extension, not part of the spec, in the namespace
+ * {@link EXPathFileLibrary#EXT_NS_URI}).
+ *
+ * Read the text of several files at the same time, through the {@link Read}
+ * object of the library, and return them in the same order.  By default, the
+ * first error is raised.  If {@code $fail-fast} is false, the error code of a
+ * file which cannot be read (e.g. {@code file:not-found}) is returned as an
+ * {@code xs:QName} in place of its text.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class ReadTextBatch
+        extends Function
+{
+    public ReadTextBatch(EXPathFileLibrary lib)
+    {
+        super(lib);
+        myLib = lib;
+    }
+
+    @Override
+    protected Definition makeDefinition()
+            throws ToolsException
+    {
+        return library()
+                .function(this, EXPathFileLibrary.extension(LOCAL_NAME))
+                .returns(Types.ANY_ITEM)
+                .param(Types.ANY_STRING,     PARAM_FILES)
+                .optional()
+                .param(Types.SINGLE_STRING,  PARAM_ENC)
+                .param(Types.SINGLE_BOOLEAN, PARAM_FAIL)
+                .make();
+    }
+
+    @Override
+    public Sequence call(XPathContext ctxt, Sequence[] orig_params)
+            throws XPathException
+    {
+        // the params
+        Parameters params = checkParams(orig_params);
+        java.util.List<String> files = params.asStringList(0, false);
+        String encoding = "UTF-8";
+        if ( orig_params.length > 1 ) {
+            encoding = params.asString(1, false);
+        }
+        boolean fail_fast = true;
+        if ( orig_params.length > 2 ) {
+            fail_fast = params.asBoolean(2, false);
+        }
+        // the actual call
+        try {
+            Read read = myLib.read();
+            if ( fail_fast ) {
+                return Return.value(read.readTexts(files, encoding));
+            }
+            java.util.List<Item> items = new ArrayList<>();
+            for ( BatchResult<String> r : read.tryReadTexts(files, encoding) ) {
+                if ( r.isSuccess() ) {
+                    items.add(new StringValue(r.getValue()));
+                }
+                else {
+                    XPathException err = myLib.error(r.getError());
+                    items.add(new QNameValue(err.getErrorCodeQName(), BuiltInAtomicType.QNAME));
+                }
+            }
+            return new SequenceExtent(items);
+        }
+        catch ( FileException ex ) {
+            throw myLib.error(ex);
+        }
+    }
+
+    private final EXPathFileLibrary myLib;
+    private static final String LOCAL_NAME  = "read-text-batch";
+    private static final String PARAM_FILES = "files";
+    private static final String PARAM_ENC   = "encoding";
+    private static final String PARAM_FAIL  = "fail-fast";
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -10,7 +10,9 @@
 
 package org.expath.file.saxon.inout;
 
+import java.io.File;
 import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.om.LazySequence;
 import net.sf.saxon.om.Sequence;
 import net.sf.saxon.trans.XPathException;
 import org.expath.file.FileException;
@@ -47,9 +49,11 @@ public class ReadTextLines
         return library()
                 .function(this, LOCAL_NAME)
                 .returns(Types.ANY_STRING)
-                .param(Types.SINGLE_STRING, PARAM_FILE)
+                .param(Types.SINGLE_STRING,  PARAM_FILE)
                 .optional()
-                .param(Types.SINGLE_STRING, PARAM_ENC)
+                .param(Types.SINGLE_STRING,  PARAM_ENC)
+                .param(Types.SINGLE_INTEGER, PARAM_OFF)
+                .param(Types.SINGLE_INTEGER, PARAM_LEN)
                 .make();
     }
 
@@ -60,28 +64,48 @@ public class ReadTextLines
         // the params
         Parameters params = checkParams(orig_params);
         String file = params.asString(0, false);
-        // the actual call
-        try {
-            Read read = new Read();
-            java.util.List<String> res;
-            if ( orig_params.length == 1 ) {
-                res = read.readTextLines(file);
+        String encoding = null;
+        if ( orig_params.length > 1 ) {
+            encoding = params.asString(1, false);
+        }
+        // a range of lines, seeking through the line index of the file
+        if ( orig_params.length > 2 ) {
+            long off = params.asLong(2, false);
+            long len = Long.MAX_VALUE;
+            if ( orig_params.length > 3 ) {
+                len = params.asLong(3, false);
+            }
+            try {
+                return Return.value(myLib.read().readTextLines(file, encoding, off, len));
             }
-            else {
-                String encoding = params.asString(1, false);
-                res = read.readTextLines(file, encoding);
+            catch ( FileException ex ) {
+                throw myLib.error(ex);
             }
-            return Return.value(res);
         }
-        catch ( FileException ex ) {
-            throw myLib.error(ex);
+        // large files are split on all cores, if the library is configured so
+        Read read = myLib.read();
+        if ( read.getParallelPool() != null
+                && new File(file).length() >= read.getParallelThreshold() ) {
+            try {
+                java.util.List<String> res = encoding == null
+                        ? read.readTextLines(file)
+                        : read.readTextLines(file, encoding);
+                return Return.value(res);
+            }
+            catch ( FileException ex ) {
+                throw myLib.error(ex);
+            }
         }
+        // else the lines are read lazily, as the query consumes them
+        return new LazySequence(new LinesIterator(myLib, file, encoding));
     }
 
     private final EXPathFileLibrary myLib;
     private static final String LOCAL_NAME = "read-text-lines";
     private static final String PARAM_FILE = "file";
     private static final String PARAM_ENC  = "encoding";
+    private static final String PARAM_OFF  = "offset";
+    private static final String PARAM_LEN  = "length";
 }
 
 
@@ -0,0 +1,96 @@
+/****************************************************************************/
+/*  File:       TailBinary.java                                             */
+/*  Author:     F. Georges                                                  */
+/*  Company:    H2O Consulting                                              */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file.saxon.inout;
+
+import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.om.Sequence;
+import net.sf.saxon.trans.XPathException;
+import org.expath.file.FileException;
+import org.expath.file.saxon.EXPathFileLibrary;
+import org.expath.tools.ToolsException;
+import org.expath.tools.saxon.fun.Definition;
+import org.expath.tools.saxon.fun.Function;
+import org.expath.tools.saxon.fun.Parameters;
+import org.expath.tools.saxon.fun.Return;
+import org.expath.tools.saxon.fun.Types;
+
+/**
+ * The filex:tail-binary function (an extension, not part of the spec, in the namespace
+ * {@link EXPathFileLibrary#EXT_NS_URI}).
+ *
+ * Return the bytes appended to a file since the previous call on the same
+ * file, through the {@link org.expath.file.Tail} object of the library.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class TailBinary
+        extends Function
+{
+    public TailBinary(EXPathFileLibrary lib)
+    {
+        super(lib);
+        myLib = lib;
+    }
+
+    @Override
+    protected Definition makeDefinition()
+            throws ToolsException
+    {
+        return library()
+                .function(this, EXPathFileLibrary.extension(LOCAL_NAME))
+                .returns(Types.SINGLE_BASE64)
+                .param(Types.SINGLE_STRING, PARAM_FILE)
+                .make();
+    }
+
+    @Override
+    public Sequence call(XPathContext ctxt, Sequence[] orig_params)
+            throws XPathException
+    {
+        // the params
+        Parameters params = checkParams(orig_params);
+        String file = params.asString(0, false);
+        // the actual call
+        try {
+            byte[] res = myLib.tail().readBinary(file);
+            return Return.value(res);
+        }
+        catch ( FileException ex ) {
+            throw myLib.error(ex);
+        }
+    }
+
+    private final EXPathFileLibrary myLib;
+    private static final String LOCAL_NAME = "tail-binary";
+    private static final String PARAM_FILE = "file";
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
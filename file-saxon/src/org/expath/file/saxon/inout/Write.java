@@ -65,7 +65,7 @@ public class Write
         org.expath.tools.model.Sequence items = params.asSequence(1, false, ctxt);
         // the actual call
         try {
-            org.expath.file.Write write = new org.expath.file.Write();
+            org.expath.file.Write write = myLib.write();
             if ( orig_params.length == 2 ) {
                 write.write(file, items);
             }
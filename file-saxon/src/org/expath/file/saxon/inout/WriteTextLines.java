@@ -64,7 +64,7 @@ public class WriteTextLines
         java.util.List<String> lines = params.asStringList(1, false);
         // the actual call
         try {
-            Write write = new Write();
+            Write write = myLib.write();
             if ( orig_params.length == 2 ) {
                 write.writeTextLines(file, lines);
             }
@@ -38,6 +38,9 @@ public class SaxonTools
             COMPILER.declareNamespace(
                     EXPathFileLibrary.NS_PREFIX,
                     EXPathFileLibrary.NS_URI);
+            COMPILER.declareNamespace(
+                    EXPathFileLibrary.EXT_NS_PREFIX,
+                    EXPathFileLibrary.EXT_NS_URI);
         }
         return COMPILER;
     }
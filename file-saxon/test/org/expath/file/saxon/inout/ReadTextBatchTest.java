@@ -0,0 +1,85 @@
+/****************************************************************************/
+/*  File:       ReadTextBatchTest.java                                      */
+/*  Author:     F. Georges - H2O Consulting                                 */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file.saxon.inout;
+
+import java.io.File;
+import net.sf.saxon.s9api.XdmValue;
+import org.expath.file.TestTools;
+import org.expath.file.saxon.SaxonTools;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Test the filex:read-text-batch function.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class ReadTextBatchTest
+{
+    @Test
+    public void readTextBatch_order()
+            throws Exception
+    {
+        String expr = "filex:read-text-batch(('" + THIRD + "', '" + SECOND + "', '" + THIRD + "'))";
+        XdmValue value = SaxonTools.evaluate(expr);
+        assertEquals(value.size(), 3, "the number of texts");
+        assertEquals(value.itemAt(0).getStringValue(), value.itemAt(2).getStringValue(), "the same file");
+        assertEquals(value.itemAt(0).getStringValue(), "First line.\nSecond line.\nThird line.\n", "the first text");
+    }
+
+    @Test
+    public void readTextBatch_errors()
+            throws Exception
+    {
+        String expr = "for $r in filex:read-text-batch(('" + MISSING + "', '" + THIRD + "'), 'utf-8', false()) "
+                + "return if ( $r instance of xs:QName ) then local-name-from-QName($r) else $r";
+        XdmValue value = SaxonTools.evaluate(expr);
+        assertEquals(value.size(), 2, "the number of results");
+        assertEquals(value.itemAt(0).getStringValue(), "not-found", "the error code");
+        assertEquals(value.itemAt(1).getStringValue(), "First line.\nSecond line.\nThird line.\n", "the text");
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+            throws Exception
+    {
+        File area = TestTools.initArea("read");
+        SECOND  = new File(area, "second.txt").getAbsolutePath();
+        THIRD   = new File(area, "third.txt").getAbsolutePath();
+        MISSING = new File(area, "no-such-file.txt").getAbsolutePath();
+    }
+
+    private static String SECOND  = null;
+    private static String THIRD   = null;
+    private static String MISSING = null;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,91 @@
+/****************************************************************************/
+/*  File:       ReadTextLinesTest.java                                      */
+/*  Author:     F. Georges - H2O Consulting                                 */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file.saxon.inout;
+
+import java.io.File;
+import net.sf.saxon.s9api.XdmValue;
+import org.expath.file.TestTools;
+import org.expath.file.saxon.SaxonTools;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Test the file:read-text-lines function.
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ * @see http://expath.org/spec/file#fn.read-text-lines
+ * @see http://expath.org/spec/file/20131203#fn.read-text-lines
+ */
+public class ReadTextLinesTest
+{
+    @Test
+    public void readTextLines_all()
+            throws Exception
+    {
+        String expr = "file:read-text-lines('" + THIRD.getAbsolutePath() + "')";
+        XdmValue value = SaxonTools.evaluate(expr);
+        assertEquals(value.size(), 3, "the number of lines");
+        assertEquals(value.itemAt(0).getStringValue(), "First line.", "the first line");
+        assertEquals(value.itemAt(2).getStringValue(), "Third line.", "the last line");
+    }
+
+    @Test
+    public void readTextLines_filtered()
+            throws Exception
+    {
+        String expr = "file:read-text-lines('" + THIRD.getAbsolutePath() + "')[starts-with(., 'S')][1]";
+        XdmValue value = SaxonTools.evaluate(expr);
+        assertEquals(value.size(), 1, "the number of lines");
+        assertEquals(value.itemAt(0).getStringValue(), "Second line.", "the selected line");
+    }
+
+    @Test
+    public void readTextLines_range()
+            throws Exception
+    {
+        String expr = "file:read-text-lines('" + THIRD.getAbsolutePath() + "', 'utf-8', 1, 1)";
+        XdmValue value = SaxonTools.evaluate(expr);
+        assertEquals(value.size(), 1, "the number of lines");
+        assertEquals(value.itemAt(0).getStringValue(), "Second line.", "the selected line");
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+            throws Exception
+    {
+        File area = TestTools.initArea("read");
+        THIRD = new File(area, "third.txt");
+    }
+
+    private static File THIRD = null;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */
@@ -0,0 +1,90 @@
+/****************************************************************************/
+/*  File:       TailTest.java                                               */
+/*  Author:     F. Georges - H2O Consulting                                 */
+/*  Date:       2026-10-17                                                  */
+/*  Tags:                                                                   */
+/*      Copyright (c) 2026 Florent Georges (see end of file.)               */
+/* ------------------------------------------------------------------------ */
+
+
+package org.expath.file.saxon.inout;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmValue;
+import org.expath.file.TestTools;
+import org.expath.file.saxon.SaxonTools;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Test the filex:tail-text-lines function (an extension, not part of the spec).
+ *
+ * @author Florent Georges
+ * @date   2026-10-17
+ */
+public class TailTest
+{
+    @Test
+    public void tailTextLines_appended()
+            throws Exception
+    {
+        File log = new File(AREA, "tail.log");
+        Files.write(log.toPath(), "one\n".getBytes(StandardCharsets.UTF_8));
+        String expr = "filex:tail-text-lines('" + log.getAbsolutePath() + "')";
+        assertEquals(SaxonTools.evaluate(expr).size(), 1, "the lines of the file");
+        Files.write(log.toPath(), "two\nthr".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        XdmValue value = SaxonTools.evaluate(expr);
+        assertEquals(value.size(), 1, "the lines appended");
+        assertEquals(value.itemAt(0).getStringValue(), "two", "the complete line appended");
+    }
+
+    @Test
+    public void tailTextLines_notInSpecNamespace()
+            throws Exception
+    {
+        String expr = "file:tail-text-lines('" + new File(AREA, "tail.log").getAbsolutePath() + "')";
+        try {
+            SaxonTools.evaluate(expr);
+            fail("The extension functions are not in the namespace of the spec");
+        }
+        catch ( SaxonApiException ex ) {
+            // expected
+        }
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+            throws Exception
+    {
+        AREA = TestTools.initArea("read");
+    }
+
+    private static File AREA = null;
+}
+
+
+/* ------------------------------------------------------------------------ */
+/*  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS COMMENT.               */
+/*                                                                          */
+/*  The contents of this file are subject to the Mozilla Public License     */
+/*  Version 1.0 (the "License"); you may not use this file except in        */
+/*  compliance with the License. You may obtain a copy of the License at    */
+/*  http://www.mozilla.org/MPL/.                                            */
+/*                                                                          */
+/*  Software distributed under the License is distributed on an "AS IS"     */
+/*  basis, WITHOUT WARRANTY OF ANY KIND, either express or implied.  See    */
+/*  the License for the specific language governing rights and limitations  */
+/*  under the License.                                                      */
+/*                                                                          */
+/*  The Original Code is: all this file.                                    */
+/*                                                                          */
+/*  The Initial Developer of the Original Code is Florent Georges.          */
+/*                                                                          */
+/*  Contributor(s): none.                                                   */
+/* ------------------------------------------------------------------------ */